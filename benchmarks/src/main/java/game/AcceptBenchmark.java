@@ -0,0 +1,80 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Connect burst against a NioServer over loopback, with one acceptor or with several SO_REUSEPORT acceptors.
+// Each operation connects, has the session answer a PING (so the connection was accepted and is being served)
+// and disconnects, from 8 threads at once. Throughput is connects per second, the sampled mode gives the
+// accept latency percentiles. Acceptors only help with as many cores as acceptors.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput , Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 2)
+@Measurement(iterations = 5 , time = 2)
+@Threads(8)
+@Fork(1)
+public class AcceptBenchmark {
+
+    private static final byte[] PING = "PING;;true\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int PONG_LENGTH = "PONG;;true\n".length();
+
+    @Param({"1" , "4"})
+    public int acceptors;
+
+    private NioServer server;
+    private InetSocketAddress address;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        BenchmarkSupport.loadCatalog();
+        server = new NioServer(new InetSocketAddress(InetAddress.getLoopbackAddress() , 0) , Listeners.DEFAULT_BACKLOG , 4 , acceptors);
+        server.start();
+        address = new InetSocketAddress(InetAddress.getLoopbackAddress() , server.localPort());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        server.stop();
+    }
+
+    @Benchmark
+    public int connect() throws IOException {
+        try (Socket socket = new Socket()) {
+            // Reset on close, so the client ports do not pile up in TIME_WAIT during the run
+            socket.setSoLinger(true , 0);
+            socket.setTcpNoDelay(true);
+            socket.connect(address);
+            socket.getOutputStream().write(PING);
+            InputStream input = socket.getInputStream();
+            byte[] pong = new byte[PONG_LENGTH];
+            int read = 0;
+            while (read < PONG_LENGTH) {
+                int n = input.read(pong , read , PONG_LENGTH - read);
+                if (n < 0) throw new IOException("Connection closed before PONG");
+                read += n;
+            }
+            return pong[0];
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Shared setup for the benchmarks: a question bank, a self-signed TLS key store and a Connection that discards what it is sent
+final class BenchmarkSupport {
+
+    private static final String QUESTIONS = String.join("\n" ,
+            "What is the capital of France?,A) London,B) Berlin,C) Rome,D) Paris,4" ,
+            "Which planet is known as the Red Planet?,A) Mars,B) Venus,C) Jupiter,D) Saturn,1" ,
+            "What is the tallest mountain in the world?,A) K2,B) Mount Everest,C) Mount Kilimanjaro,D) Mount McKinley,2");
+
+    static final char[] KEY_STORE_PASSWORD = "benchmark".toCharArray(); // Password of the self-signed key store
+
+    private BenchmarkSupport() {
+    }
+
+    // Static method to load a small question bank into QuizCatalog
+    static QuizCatalog loadCatalog() throws IOException {
+        Path file = Files.createTempFile("questions" , ".csv");
+        try {
+            Files.write(file , QUESTIONS.getBytes(StandardCharsets.UTF_8));
+            return QuizCatalog.load(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Static method to generate a PKCS12 key store with a self-signed certificate for localhost and 127.0.0.1,
+    // with the JDK's keytool. The caller deletes it.
+    static Path selfSignedKeyStore() throws IOException {
+        Path keyStore = Files.createTempFile("server" , ".p12");
+        Files.delete(keyStore); // keytool will not write into an empty file
+        String keytool = Paths.get(System.getProperty("java.home") , "bin" , "keytool").toString();
+        Process process = new ProcessBuilder(keytool , "-genkeypair" , "-alias" , "server" ,
+                "-keyalg" , "EC" , "-groupname" , "secp256r1" , "-dname" , "CN=localhost" ,
+                "-ext" , "SAN=dns:localhost,ip:127.0.0.1" , "-validity" , "2" , "-storetype" , "PKCS12" ,
+                "-keystore" , keyStore.toString() , "-storepass" , new String(KEY_STORE_PASSWORD))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            if (process.waitFor() != 0) throw new IOException("keytool failed with exit code " + process.exitValue());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating the key store" , e);
+        }
+        return keyStore;
+    }
+
+    // Static method to silence console output, so benchmarks of printing code measure the code and not the terminal
+    static void silenceConsole() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    // Connection that counts and drops every write
+    static final class NullConnection implements Connection {
+
+        private final boolean binary; // Whether the session should answer with binary frames
+        long bytes; // Bytes written so far, read by benchmarks so the writes are not optimized away
+
+        NullConnection(boolean binary) {
+            this.binary = binary;
+        }
+
+        @Override
+        public boolean isBinary() {
+            return binary;
+        }
+
+        @Override
+        public void write(String line) {
+            bytes += line.length() + 1;
+        }
+
+        @Override
+        public void write(byte[] line) {
+            bytes += line.length;
+        }
+
+        @Override
+        public void write(byte[] array , int offset , int length) {
+            bytes += length;
+        }
+
+        @Override
+        public long receivedAt() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+    }
+}
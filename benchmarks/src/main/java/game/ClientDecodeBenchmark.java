@@ -0,0 +1,44 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+// Client-side decoding of server messages; console output is discarded
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+public class ClientDecodeBenchmark {
+
+    private Client client;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.silenceConsole();
+        // Never connected, the decoding paths benchmarked here do not touch the socket
+        client = new Client(new Socket() , false , new ConsoleClient());
+    }
+
+    @Benchmark
+    public void messageHandlerResultAnswer() {
+        client.messageHandler("RESULT_ANSWER;;YES,42");
+    }
+
+    @Benchmark
+    public void resultAnswer() {
+        client.resultAnswer("NO,42");
+    }
+}
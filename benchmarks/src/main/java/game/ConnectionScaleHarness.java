@@ -0,0 +1,272 @@
+package game;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+// Load test of the server modes at scale, next to the JMH benchmarks: starts a server in this process, opens
+// N connections to it, has each one REGISTER and keeps them all open. Reports the latency from connect to the
+// REGISTER reply, and what each open connection costs in heap, resident memory and threads. Heap is measured
+// after a GC before the connections are opened and once they are all registered; resident memory and threads
+// against the idle server, since the blocking modes keep pooled threads and their stacks between runs.
+// The client channels live in the same process, so their cost is included, the same for every mode.
+// One mode per run, as the session executor is process-wide; virtual needs JDK 21 or newer.
+//
+// Usage: java -cp benchmarks/target/benchmarks.jar game.ConnectionScaleHarness [--mode=classic|virtual|nio]
+//                 [--connections=10000,50000] [--io-threads=N] [--window=256]
+//
+// Each connection takes two file descriptors here, its client and server end, so 50000 connections need
+// ulimit -n above 100000. Clients connect from 16 loopback addresses, so they do not run out of ephemeral ports.
+public final class ConnectionScaleHarness {
+
+    private static final byte[] REGISTER = "REGISTER;;Load,Player,30\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int SOURCE_ADDRESSES = 16; // Loopback addresses the clients connect from
+    private static final long STALL_MILLIS = 10_000; // No connection progressing for this long fails the run
+
+    private static NioServer nioServer; // Server of the nio mode
+    private static ServerSocket serverSocket; // Listening socket of the blocking modes
+    private static long idleResident; // Resident memory of the idle server, -1 if unknown
+    private static int idleThreads; // Live threads of the idle server
+
+    private ConnectionScaleHarness() {
+    }
+
+    public static void main(String[] args) throws IOException , InterruptedException {
+        String mode = "nio";
+        String connections = "10000,50000";
+        int ioThreads = Runtime.getRuntime().availableProcessors();
+        int window = 256;
+        for (String arg : args) {
+            if (arg.startsWith("--mode=")) {
+                mode = arg.substring("--mode=".length());
+            } else if (arg.startsWith("--connections=")) {
+                connections = arg.substring("--connections=".length());
+            } else if (arg.startsWith("--io-threads=")) {
+                ioThreads = Integer.parseInt(arg.substring("--io-threads=".length()));
+            } else if (arg.startsWith("--window=")) {
+                window = Integer.parseInt(arg.substring("--window=".length()));
+            } else {
+                System.out.printf("Unknown argument: %s\n" , arg);
+                return;
+            }
+        }
+
+        BenchmarkSupport.loadCatalog();
+        InetSocketAddress address = start(mode , ioThreads);
+        if (address == null) return;
+        idleResident = residentBytes();
+        idleThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        try {
+            for (String count : connections.split(",")) {
+                run(mode , address , Integer.parseInt(count.trim()) , window);
+            }
+        } finally {
+            if (nioServer != null) nioServer.stop();
+            if (serverSocket != null) serverSocket.close();
+        }
+        // The session threads of the blocking modes linger in their pool
+        System.exit(0);
+    }
+
+    // Static method to start the server of a mode on a loopback port, returning its address, or null if the mode cannot run
+    private static InetSocketAddress start(String mode , int ioThreads) throws IOException {
+        InetSocketAddress bind = new InetSocketAddress(InetAddress.getLoopbackAddress() , 0);
+        int port;
+        switch (mode) {
+            case "nio":
+                nioServer = new NioServer(bind , Listeners.DEFAULT_BACKLOG , ioThreads , 1);
+                nioServer.start();
+                port = nioServer.localPort();
+                break;
+            case "virtual":
+                ExecutorService executor = Server.virtualThreadExecutor();
+                if (executor == null) {
+                    System.out.printf("--mode=virtual needs virtual threads (JDK 21 or newer), this is JDK %d\n" ,
+                            Runtime.version().feature());
+                    return null;
+                }
+                ClientManager.useExecutor(executor);
+                // Fall through, the virtual mode is the classic one on another executor
+            case "classic":
+                // What Server's acceptor does, one session (and its reader) per connection
+                serverSocket = Listeners.openBlocking(bind , Listeners.DEFAULT_BACKLOG , 1).get(0);
+                Thread acceptor = new Thread(ConnectionScaleHarness::accept , "harness-acceptor");
+                acceptor.setDaemon(true);
+                acceptor.start();
+                port = serverSocket.getLocalPort();
+                break;
+            default:
+                System.out.printf("Unknown mode: %s\n" , mode);
+                return null;
+        }
+        return new InetSocketAddress(InetAddress.getLoopbackAddress() , port);
+    }
+
+    private static void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                Admission.tryAdmit();
+                ClientManager.manage(client);
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    // Method to open count connections, register each, report the latency and the cost per connection, then close them
+    private static void run(String mode , InetSocketAddress server , int count , int window) throws IOException , InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long heapBefore = usedHeap();
+        int admittedBefore = Admission.open();
+
+        LatencyHistogram latency = new LatencyHistogram();
+        List<SocketChannel> channels = new ArrayList<>(count);
+        long started = System.nanoTime();
+        try (Selector selector = Selector.open()) {
+            int next = 0;
+            int pending = 0; // Connections opened and not registered yet, at most window
+            int registered = 0;
+            while (registered < count) {
+                while (pending < window && next < count) {
+                    SocketChannel channel = SocketChannel.open();
+                    channels.add(channel);
+                    channel.configureBlocking(false);
+                    // Reset on close, so the client ports do not pile up in TIME_WAIT between runs
+                    channel.setOption(StandardSocketOptions.SO_LINGER , 0);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY , true);
+                    channel.bind(new InetSocketAddress(sourceAddress(next) , 0));
+                    Pending connection = new Pending(System.nanoTime());
+                    if (channel.connect(server)) {
+                        channel.write(ByteBuffer.wrap(REGISTER));
+                        channel.register(selector , SelectionKey.OP_READ , connection);
+                    } else {
+                        channel.register(selector , SelectionKey.OP_CONNECT , connection);
+                    }
+                    next++;
+                    pending++;
+                }
+                if (selector.select(STALL_MILLIS) == 0) {
+                    throw new IOException(String.format("No REGISTER reply for %d ms, %d of %d connections registered" ,
+                            STALL_MILLIS , registered , count));
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    SocketChannel channel = (SocketChannel) key.channel();
+                    Pending connection = (Pending) key.attachment();
+                    if (key.isConnectable()) {
+                        channel.finishConnect();
+                        // A fresh socket takes the whole line
+                        channel.write(ByteBuffer.wrap(REGISTER));
+                        key.interestOps(SelectionKey.OP_READ);
+                    } else if (key.isReadable() && connection.read(channel)) {
+                        latency.record(System.nanoTime() - connection.started);
+                        // Stays open and idle from now on
+                        key.cancel();
+                        pending--;
+                        registered++;
+                    }
+                }
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        long heapPerConnection = (usedHeap() - heapBefore) / count;
+        long residentAfter = residentBytes();
+        double threadsPerConnection = (double) (threads.getThreadCount() - idleThreads) / count;
+        System.out.printf("%s: %d connections registered in %d ms, %d admitted by the server\n" ,
+                mode , count , elapsedMillis , Admission.open() - admittedBefore);
+        System.out.printf("  connect to REGISTER reply  %s\n" , latency.summary());
+        System.out.printf("  per connection             %d bytes of heap, %s resident, %.2f threads\n" ,
+                heapPerConnection ,
+                idleResident < 0 ? "unknown" : (residentAfter - idleResident) / count + " bytes" ,
+                threadsPerConnection);
+
+        for (SocketChannel channel : channels) {
+            channel.close();
+        }
+        awaitClosed(admittedBefore);
+    }
+
+    // Static method to wait until the server has closed the sessions of a run, so the next one starts from the same state
+    private static void awaitClosed(int admitted) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + STALL_MILLIS;
+        while (Admission.open() > admitted && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    // Static method to get the loopback address a client connects from, spreading clients over SOURCE_ADDRESSES
+    private static InetAddress sourceAddress(int client) throws IOException {
+        return InetAddress.getByAddress(new byte[] {127 , 0 , 0 , (byte) (1 + client % SOURCE_ADDRESSES)});
+    }
+
+    // Static method to get the heap in use once garbage is collected
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Static method to get the resident memory of the process, with thread stacks and direct buffers,
+    // or -1 where /proc is not available
+    private static long residentBytes() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) return -1;
+        try {
+            for (String line : Files.readAllLines(status)) {
+                // e.g. "VmRSS:    123456 kB"
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring("VmRSS:".length()).replace("kB" , "").trim()) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+        }
+        return -1;
+    }
+
+    // A connection waiting for its REGISTER reply
+    private static final class Pending {
+        private final long started; // When the connect was started
+        private final ByteBuffer reply = ByteBuffer.allocate(128); // The reply line read so far
+
+        private Pending(long started) {
+            this.started = started;
+        }
+
+        // Method to read more of the reply, returning true once the whole line is in
+        private boolean read(SocketChannel channel) throws IOException {
+            if (channel.read(reply) < 0) throw new IOException("Server closed the connection before the REGISTER reply");
+            for (int i = 0; i < reply.position(); i++) {
+                if (reply.get(i) != '\n') continue;
+                String line = new String(reply.array() , 0 , i , StandardCharsets.US_ASCII);
+                if (!line.startsWith("REGISTER;;")) throw new IOException("Unexpected reply to REGISTER: " + line);
+                return true;
+            }
+            if (!reply.hasRemaining()) throw new IOException("REGISTER reply longer than " + reply.capacity() + " bytes");
+            return false;
+        }
+    }
+}
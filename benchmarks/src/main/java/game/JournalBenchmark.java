@@ -0,0 +1,94 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Journal write throughput (queue, append, group commit) and startup replay time, for a given number of events.
+// Divide the events by the reported time to get events per second, e.g. -p events=10000000 for a 10M-event replay.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JournalBenchmark {
+
+    private static final int PARTICIPANTS = 100_000;
+
+    @Param("1000000")
+    public int events;
+
+    private Path written; // Journal filled once, replayed by recover
+    private Path scratch; // Fresh directory for every append run
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        written = Files.createTempDirectory("journal");
+        fill(written);
+    }
+
+    @Setup(Level.Invocation)
+    public void newScratch() throws IOException {
+        scratch = Files.createTempDirectory("journal");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteScratch() throws IOException {
+        delete(scratch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        delete(written);
+    }
+
+    // Queue every event and wait until the last batch is on disk
+    @Benchmark
+    public long append() throws IOException {
+        return fill(scratch);
+    }
+
+    // Open the journal as the server does on startup
+    @Benchmark
+    public int recover() throws IOException {
+        Journal journal = Journal.open(written , Journal.DEFAULT_SEGMENT_SIZE);
+        journal.close();
+        return journal.size();
+    }
+
+    private long fill(Path directory) throws IOException {
+        Journal journal = Journal.open(directory , Journal.DEFAULT_SEGMENT_SIZE);
+        for (int i = 1; i <= PARTICIPANTS; i++) {
+            journal.register(i , i , "Player" , "Number" + i , "30");
+        }
+        for (int i = 0; i < events - PARTICIPANTS; i++) {
+            journal.score(1 + i % PARTICIPANTS , 1 + i / PARTICIPANTS);
+        }
+        journal.close();
+        return journal.lastId();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Leaderboard updates and queries with 100k players, from 8 threads at once.
+// With sparse scores two players are far ahead of the rest, one of them above the bucketed scores, so the top-K
+// has to skip tens of thousands of empty buckets to reach the others.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Threads(8)
+@Fork(1)
+public class LeaderboardBenchmark {
+
+    private static final int PLAYERS = 100_000;
+
+    @State(Scope.Benchmark)
+    public static class Board {
+        final Leaderboard leaderboard = new Leaderboard(1 << 16);
+        final AtomicInteger threads = new AtomicInteger();
+
+        @Param({"dense" , "sparse"})
+        public String scores;
+
+        @Setup
+        public void setup() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < PLAYERS; i++) {
+                leaderboard.add(i , "Player " + i , random.nextInt(50));
+            }
+            if (scores.equals("sparse")) {
+                leaderboard.add(PLAYERS , "Leader" , 60_000);
+                leaderboard.add(PLAYERS + 1 , "Runaway leader" , 1_000_000);
+            }
+        }
+    }
+
+    // Each thread only moves its own slice of players, like sessions only score themselves
+    @State(Scope.Thread)
+    public static class Player {
+        int[] scores; // Points gained by each player of the slice
+        int first;
+        int next;
+
+        @Setup
+        public void setup(Board board) {
+            int slice = PLAYERS / 8;
+            first = (board.threads.getAndIncrement() % 8) * slice;
+            scores = new int[slice];
+        }
+    }
+
+    @Benchmark
+    public void update(Board board , Player player) {
+        int index = player.next++ % player.scores.length;
+        board.leaderboard.update(player.first + index , 50 + ++player.scores[index] % 100);
+    }
+
+    @Benchmark
+    public int rank(Board board , Player player) {
+        return board.leaderboard.rank(player.first + player.next++ % player.scores.length);
+    }
+
+    @Benchmark
+    public List<Leaderboard.Ranked> top10(Board board) {
+        return board.leaderboard.top(10);
+    }
+}
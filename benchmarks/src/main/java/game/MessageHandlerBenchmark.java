@@ -0,0 +1,91 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Server-side parsing and dispatch of one inbound message, text and binary
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+public class MessageHandlerBenchmark {
+
+    private BenchmarkSupport.NullConnection textConnection;
+    private BenchmarkSupport.NullConnection binaryConnection;
+    private ClientManager textSession;
+    private ClientManager binarySession;
+
+    // A wrong answer, so the session state does not move between invocations.
+    // A question can only be answered once, so the answer benchmarks have NEXT_QUIZ send it again first.
+    private final byte[] textAnswer = "ANSWER_QUIZ;;X".getBytes(StandardCharsets.UTF_8);
+    private final byte[] textNextQuiz = "NEXT_QUIZ;;true".getBytes(StandardCharsets.UTF_8);
+    private byte[] binaryAnswer;
+    private byte[] binaryNextQuiz;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkSupport.loadCatalog();
+
+        textConnection = new BenchmarkSupport.NullConnection(false);
+        textSession = ClientManager.attach(textConnection);
+        byte[] register = "REGISTER;;Ada,Lovelace,36".getBytes(StandardCharsets.UTF_8);
+        textSession.messageHandler(register , 0 , register.length);
+
+        binaryConnection = new BenchmarkSupport.NullConnection(true);
+        binarySession = ClientManager.attach(binaryConnection);
+        byte[] binaryRegister = body(BinaryProtocol.frame(BinaryProtocol.REGISTER , "Ada" , "Lovelace" , "36"));
+        binarySession.binaryMessageHandler(binaryRegister , 0 , binaryRegister.length);
+
+        binaryAnswer = body(BinaryProtocol.frame(BinaryProtocol.ANSWER_QUIZ , "X"));
+        binaryNextQuiz = body(BinaryProtocol.frame(BinaryProtocol.NEXT_QUIZ));
+    }
+
+    @Benchmark
+    public long textAnswerQuiz() {
+        textSession.messageHandler(textNextQuiz , 0 , textNextQuiz.length);
+        textSession.messageHandler(textAnswer , 0 , textAnswer.length);
+        return textConnection.bytes;
+    }
+
+    @Benchmark
+    public long textNextQuiz() {
+        textSession.messageHandler(textNextQuiz , 0 , textNextQuiz.length);
+        return textConnection.bytes;
+    }
+
+    @Benchmark
+    public long binaryAnswerQuiz() {
+        binarySession.binaryMessageHandler(binaryNextQuiz , 0 , binaryNextQuiz.length);
+        binarySession.binaryMessageHandler(binaryAnswer , 0 , binaryAnswer.length);
+        return binaryConnection.bytes;
+    }
+
+    @Benchmark
+    public long binaryNextQuiz() {
+        binarySession.binaryMessageHandler(binaryNextQuiz , 0 , binaryNextQuiz.length);
+        return binaryConnection.bytes;
+    }
+
+    // Strip the length prefix, the transports hand the handler only the frame body
+    private static byte[] body(byte[] frame) {
+        int[] length = new int[1];
+        int offset = BinaryProtocol.findFrame(frame , 0 , frame.length , length);
+        byte[] body = new byte[length[0]];
+        System.arraycopy(frame , offset , body , 0 , length[0]);
+        return body;
+    }
+}
@@ -0,0 +1,111 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// One question played against a NioServer over loopback, per request or pipelined.
+// prefetch 0 is ANSWER_QUIZ -> RESULT_ANSWER then NEXT_QUIZ -> QUIZ, two round trips per question.
+// prefetch 1 gets the result and the next question in one reply, one round trip per question.
+// Above 1 the player holds questions ahead and only waits for the server when it has none left,
+// as a client on a slow link would; the quiz is started over whenever it ends.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput , Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 2)
+@Measurement(iterations = 5 , time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private static final byte[] REGISTER = "REGISTER;;Ada,Lovelace,36\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] QUIZ = "QUIZ;;true\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ANSWER = "ANSWER_QUIZ;;X\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEXT_QUIZ = "NEXT_QUIZ;;true\n".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"0" , "1" , "4"})
+    public int prefetch;
+
+    private NioServer server;
+    private Socket socket;
+    private OutputStream output;
+    private BufferedReader reader;
+    private int held; // Questions received and not answered yet
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        BenchmarkSupport.loadCatalog();
+        server = new NioServer(0 , 1);
+        server.start();
+        socket = new Socket("localhost" , server.localPort());
+        socket.setTcpNoDelay(true);
+        output = socket.getOutputStream();
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream() , StandardCharsets.UTF_8));
+
+        output.write(REGISTER);
+        readUntil("REGISTER;;");
+        if (prefetch > 0) {
+            output.write(("PREFETCH;;" + prefetch + "\n").getBytes(StandardCharsets.UTF_8));
+            readUntil("PREFETCH;;");
+        }
+        output.write(QUIZ);
+        readUntil("QUIZ;;");
+        held = 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        socket.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public int question() throws IOException {
+        output.write(ANSWER);
+        held--;
+        if (prefetch == 0) {
+            readUntil("RESULT_ANSWER;;");
+            output.write(NEXT_QUIZ);
+            readUntil("QUIZ;;");
+            held++;
+            return held;
+        }
+        // Take in whatever arrived, and wait only when there is no question left to answer
+        while (held == 0 || reader.ready()) {
+            String line = reader.readLine();
+            if (line == null) throw new IOException("Connection closed");
+            if (line.startsWith("QUIZ;;")) {
+                held++;
+            } else if (line.startsWith("ERROR;;")) {
+                // Game ended, start over
+                output.write(QUIZ);
+            }
+        }
+        return held;
+    }
+
+    private void readUntil(String prefix) throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) throw new IOException("Connection closed");
+        } while (!line.startsWith(prefix));
+    }
+}
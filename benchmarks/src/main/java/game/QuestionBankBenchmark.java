@@ -0,0 +1,97 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Drawing a player's next question from a large bank without repeats, and sending it out of the mapped store.
+// The QuestionSampler is compared with a HashSet<Integer> of the questions seen and a retry on every repeat.
+// A quiz is started over once half the pool is drawn, so both the sampler's table and its bitset are measured.
+// Run with -prof gc to see that drawing and sending allocate nothing beyond the sampler of each new quiz.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+public class QuestionBankBenchmark {
+
+    private static final String[] CATEGORIES = {"science" , "history" , "geography" , "art" , "sport"};
+    private static final String[] DIFFICULTIES = {"easy" , "medium" , "hard"};
+
+    @Param({"1000" , "1000000"})
+    public int questions;
+
+    private QuizCatalog catalog;
+    private final BenchmarkSupport.NullConnection connection = new BenchmarkSupport.NullConnection(false);
+    private QuestionSampler sampler;
+    private QuestionSampler tagSampler;
+    private Set<Integer> seen;
+
+    @Setup
+    public void setup() throws IOException {
+        Path file = Files.createTempFile("bank" , ".csv");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(file , StandardCharsets.UTF_8)) {
+                for (int i = 0; i < questions; i++) {
+                    writer.write(String.format("Question %d?,A) one,B) two,C) three,D) four,%d|%s|%s\n" , i , i % 4 + 1 ,
+                            CATEGORIES[i % CATEGORIES.length] , DIFFICULTIES[i / CATEGORIES.length % DIFFICULTIES.length]));
+                }
+            }
+            catalog = QuizCatalog.load(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        sampler = catalog.sampler(null);
+        tagSampler = catalog.sampler("science");
+        seen = new HashSet<>();
+    }
+
+    @Benchmark
+    public int drawSampler() {
+        if (sampler.remaining() <= questions / 2) sampler = catalog.sampler(null);
+        return sampler.next();
+    }
+
+    @Benchmark
+    public int drawTag() {
+        if (tagSampler.remaining() <= questions / CATEGORIES.length / 2) tagSampler = catalog.sampler("science");
+        return tagSampler.next();
+    }
+
+    @Benchmark
+    public int drawBoxedSet() {
+        if (seen.size() >= questions / 2) seen = new HashSet<>();
+        int question;
+        do {
+            question = ThreadLocalRandom.current().nextInt(questions);
+        } while (!seen.add(question));
+        return question;
+    }
+
+    // What a session does for each question: draw it and copy its line out of the store into the connection
+    @Benchmark
+    public long drawAndSend() {
+        if (sampler.remaining() <= questions / 2) sampler = catalog.sampler(null);
+        catalog.writeQuiz(connection , sampler.next());
+        return connection.bytes;
+    }
+}
@@ -0,0 +1,60 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Building a QUIZ message per send versus the line encoded once into the question store, copied out of the
+// mapped store into a new array (as rooms do) or straight into the sending thread's buffer (as sessions do)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+public class QuizSerializationBenchmark {
+
+    private final Quiz quiz = new Quiz("What is the capital of France?" ,
+            new String[]{"A) London" , "B) Berlin" , "C) Rome" , "D) Paris"} , 4); // The first question of the bank
+    private final BenchmarkSupport.NullConnection connection = new BenchmarkSupport.NullConnection(false);
+    private QuizCatalog catalog;
+
+    @Setup
+    public void setup() throws IOException {
+        catalog = BenchmarkSupport.loadCatalog();
+    }
+
+    @Benchmark
+    public String toStringOnly() {
+        return quiz.toString();
+    }
+
+    // What every QUIZ send used to cost: toString, escaping, String.format and encoding
+    @Benchmark
+    public byte[] encodePerSend() {
+        String line = String.format("%s;;%s\n" , "QUIZ" , quiz.toString().replace("\n" , ";n;"));
+        return line.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] storedLine() {
+        return catalog.quizLine(0);
+    }
+
+    @Benchmark
+    public long writeStoredLine() {
+        catalog.writeQuiz(connection , 0);
+        return connection.bytes;
+    }
+}
@@ -0,0 +1,86 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Full REGISTER -> QUIZ -> ANSWER_QUIZ -> NEXT_QUIZ exchange against a NioServer over loopback.
+// Sampled, so the report includes latency percentiles.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput , Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 2)
+@Measurement(iterations = 5 , time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    private static final byte[] REGISTER = "REGISTER;;Ada,Lovelace,36\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] QUIZ = "QUIZ;;true\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ANSWER = "ANSWER_QUIZ;;X\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEXT_QUIZ = "NEXT_QUIZ;;true\n".getBytes(StandardCharsets.UTF_8);
+
+    private NioServer server;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        BenchmarkSupport.loadCatalog();
+        server = new NioServer(0 , 2);
+        server.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        server.stop();
+    }
+
+    // One connection per benchmark thread
+    @State(Scope.Thread)
+    public static class Player {
+        private Socket socket;
+        private OutputStream output;
+        private BufferedReader reader;
+
+        @Setup(Level.Trial)
+        public void connect(RoundTripBenchmark benchmark) throws IOException {
+            socket = new Socket("localhost" , benchmark.server.localPort());
+            socket.setTcpNoDelay(true);
+            output = socket.getOutputStream();
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream() , StandardCharsets.UTF_8));
+        }
+
+        @TearDown(Level.Trial)
+        public void disconnect() throws IOException {
+            socket.close();
+        }
+
+        private String request(byte[] message) throws IOException {
+            output.write(message);
+            return reader.readLine();
+        }
+    }
+
+    @Benchmark
+    public String roundTrip(Player player) throws IOException {
+        player.request(REGISTER);
+        player.request(QUIZ);
+        player.request(ANSWER);
+        return player.request(NEXT_QUIZ);
+    }
+}
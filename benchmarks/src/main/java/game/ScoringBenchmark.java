@@ -0,0 +1,91 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Answer checking: the compiled AnswerKeys against the switch on Quiz.CorrectAnswer they replaced,
+// for single letters, multi-select letters and numbers
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+
+    private final Quiz quiz = new Quiz("What is the capital of France?" ,
+            new String[]{"A) London" , "B) Berlin" , "C) Rome" , "D) Paris"} , 4);
+    private final Quiz[] quizzes = {
+            quiz ,
+            Quiz.choice("Which of these are prime numbers?" , new String[]{"A) 2" , "B) 4" , "C) 7" , "D) 9" , "E) 11"} , 0b10101 , 1) ,
+            Quiz.numeric("What is pi to two decimal places?" , 3.14 , 0.005 , 2)
+    };
+    private final AnswerKeys keys = AnswerKeys.compile(quizzes);
+    private final byte[] answers = {'a' , 'B' , 'c' , 'D' , 'd' , 'x' , 'A' , '7'}; // A power of two, indexed with a mask
+    private final byte[][] multiSelect = bytes("ACE" , "a,c,e" , "AC" , "BD");
+    private final byte[][] numbers = bytes("3.14" , "3.1" , "-3.14" , "pi");
+    private int next;
+
+    @Benchmark
+    public boolean switchSingle() {
+        int index = next++ & 7;
+        // Looked up by number as the sessions did, with catalog.get(quizNumber)
+        return isCorrectAnswer(quizzes[0] , answers , index , 1);
+    }
+
+    @Benchmark
+    public boolean keysSingle() {
+        int index = next++ & 7;
+        return keys.isCorrect(0 , answers , index , 1);
+    }
+
+    @Benchmark
+    public boolean keysMultiSelect() {
+        byte[] answer = multiSelect[next++ & 3];
+        return keys.isCorrect(1 , answer , 0 , answer.length);
+    }
+
+    @Benchmark
+    public boolean keysNumeric() {
+        byte[] answer = numbers[next++ & 3];
+        return keys.isCorrect(2 , answer , 0 , answer.length);
+    }
+
+    // The check AnswerKeys replaced, as it was in ClientManager
+    private static boolean isCorrectAnswer(Quiz quiz , byte[] response , int offset , int length) {
+        byte correctAnswer;
+        switch (quiz.CorrectAnswer) {
+            case 1:
+                correctAnswer = 'A';
+                break;
+            case 2:
+                correctAnswer = 'B';
+                break;
+            case 3:
+                correctAnswer = 'C';
+                break;
+            default:
+                correctAnswer = 'D';
+                break;
+        }
+        return length == 1 && (response[offset] & 0xDF) == correctAnswer;
+    }
+
+    private static byte[][] bytes(String... texts) {
+        byte[][] result = new byte[texts.length][];
+        for (int i = 0; i < texts.length; i++) {
+            result[i] = texts[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Reconnect storm: 8 threads parking sessions and resuming them from the SessionCache
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 1)
+@Measurement(iterations = 5 , time = 1)
+@Threads(8)
+@Fork(1)
+public class SessionCacheBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Cache {
+        final SessionCache cache = new SessionCache(100_000 , 2 , TimeUnit.MINUTES);
+        final AtomicLong ids = new AtomicLong();
+    }
+
+    @State(Scope.Thread)
+    public static class Session {
+        final Participant participant = new Participant("Load" , "Player" , "30");
+        final int[] questions = {3};
+        long clientId;
+
+        @Setup
+        public void setup(Cache cache) {
+            clientId = cache.ids.incrementAndGet();
+        }
+    }
+
+    // One disconnect and one RESUME
+    @Benchmark
+    public SessionCache.Parked parkAndResume(Cache cache , Session session) {
+        cache.cache.park(new SessionCache.Parked(session.clientId , 42 , session.participant , null , null , session.questions , true));
+        return cache.cache.take(session.clientId , 42);
+    }
+}
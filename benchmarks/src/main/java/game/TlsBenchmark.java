@@ -0,0 +1,189 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+// TLS against plaintext over loopback, on the nio server and on the blocking server, from 4 threads at once.
+// connectFull connects, has the session answer a PING and disconnects, with a full handshake every time;
+// connectResumed does the same through one client context, so the server resumes the session from its ticket.
+// Both are the same plain connect without TLS. pingBatch is the steady state: 64 pipelined PINGs and their
+// PONGs on a connection that stays open. The certificate is self-signed, generated with keytool for the run.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3 , time = 2)
+@Measurement(iterations = 5 , time = 2)
+@Threads(4)
+@Fork(1)
+public class TlsBenchmark {
+
+    private static final int BATCH = 64; // PINGs per pingBatch
+    private static final byte[] PING = "PING;;true\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PINGS = "PING;;true\n".repeat(BATCH).getBytes(StandardCharsets.US_ASCII);
+    private static final int PONG_LENGTH = "PONG;;true\n".length();
+
+    @Param({"plain" , "tls"})
+    public String transport;
+
+    @Param({"nio" , "blocking"})
+    public String mode;
+
+    private Path keyStore;
+    private NioServer nioServer;
+    private ServerSocket serverSocket;
+    private InetSocketAddress address;
+    private SSLContext clientContext; // Shared by every connectResumed, null for plaintext
+    private TrustManager[] trustManagers; // Trust the self-signed certificate, loaded once for the contexts of connectFull
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException , GeneralSecurityException {
+        BenchmarkSupport.loadCatalog();
+        if (transport.equals("tls")) {
+            keyStore = BenchmarkSupport.selfSignedKeyStore();
+            Tls.use(Tls.serverContext(keyStore , BenchmarkSupport.KEY_STORE_PASSWORD , 20_000 , 3_600) , 2);
+            clientContext = Tls.clientContext(keyStore , BenchmarkSupport.KEY_STORE_PASSWORD);
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init(KeyStore.getInstance(keyStore.toFile() , BenchmarkSupport.KEY_STORE_PASSWORD));
+            trustManagers = factory.getTrustManagers();
+        } else {
+            Tls.use(null , 0);
+        }
+        InetSocketAddress bind = new InetSocketAddress(InetAddress.getLoopbackAddress() , 0);
+        int port;
+        if (mode.equals("nio")) {
+            nioServer = new NioServer(bind , Listeners.DEFAULT_BACKLOG , 2 , 1);
+            nioServer.start();
+            port = nioServer.localPort();
+        } else {
+            // What Server's acceptor does, one session thread per connection
+            serverSocket = Listeners.openBlocking(bind , Listeners.DEFAULT_BACKLOG , 1).get(0);
+            Thread acceptor = new Thread(this::accept , "benchmark-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            port = serverSocket.getLocalPort();
+        }
+        address = new InetSocketAddress(InetAddress.getLoopbackAddress() , port);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        if (nioServer != null) nioServer.stop();
+        if (serverSocket != null) serverSocket.close();
+        Tls.use(null , 0);
+        if (keyStore != null) Files.deleteIfExists(keyStore);
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                Admission.tryAdmit();
+                ClientManager.manage(client);
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    // One open connection per benchmark thread, for pingBatch
+    @State(Scope.Thread)
+    public static class Player {
+        private Socket socket;
+        private final byte[] pongs = new byte[BATCH * PONG_LENGTH];
+
+        @Setup(Level.Trial)
+        public void connect(TlsBenchmark benchmark) throws IOException {
+            socket = benchmark.open(benchmark.clientContext);
+        }
+
+        @TearDown(Level.Trial)
+        public void disconnect() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Benchmark
+    public int connectFull() throws IOException , GeneralSecurityException {
+        if (clientContext == null) return ping(null);
+        // A context of its own has no session to resume
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null , trustManagers , null);
+        return ping(context);
+    }
+
+    @Benchmark
+    public int connectResumed() throws IOException {
+        return ping(clientContext);
+    }
+
+    @Benchmark
+    public int pingBatch(Player player) throws IOException {
+        player.socket.getOutputStream().write(PINGS);
+        readFully(player.socket.getInputStream() , player.pongs);
+        return player.pongs[0];
+    }
+
+    // Method to connect, get a PONG back and disconnect
+    private int ping(SSLContext context) throws IOException {
+        try (Socket socket = open(context)) {
+            // Reset on close, so the client ports do not pile up in TIME_WAIT during the run
+            socket.setSoLinger(true , 0);
+            socket.getOutputStream().write(PING);
+            byte[] pong = new byte[PONG_LENGTH];
+            readFully(socket.getInputStream() , pong);
+            return pong[0];
+        }
+    }
+
+    // Method to open a plaintext connection, or a TLS one through a client context
+    private Socket open(SSLContext context) throws IOException {
+        Socket socket;
+        if (context == null) {
+            socket = new Socket(address.getAddress() , address.getPort());
+        } else {
+            SSLSocket secure = Tls.connect(context , address.getAddress().getHostAddress() , address.getPort());
+            secure.startHandshake();
+            socket = secure;
+        }
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
+    private static void readFully(InputStream input , byte[] bytes) throws IOException {
+        int read = 0;
+        while (read < bytes.length) {
+            int n = input.read(bytes , read , bytes.length - read);
+            if (n < 0) throw new IOException("Connection closed early");
+            read += n;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package game;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Admission control and backpressure limits shared by both transports:
+// a cap on open connections checked by the acceptors, the inbound message rate each session may sustain,
+// and how many unsent bytes a connection may hold before its client is dropped as a slow consumer.
+public final class Admission {
+
+    private static final byte[] SERVER_FULL = "ERROR;;Server full, try again later\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final AtomicInteger open = new AtomicInteger(); // Connections admitted and not closed yet
+    private static volatile int maxSessions = 0; // Most open connections, 0 for no limit
+    private static volatile int messagesPerSecond = 0; // Sustained inbound rate per session, 0 for no limit
+    private static volatile int burst = 0; // Messages a session may send at once on top of its rate
+    private static volatile int maxOutboundBytes = 1 << 20; // Unsent bytes a connection may hold
+
+    private Admission() {
+    }
+
+    // Static method to set the limits; 0 turns the session cap or the rate limit off
+    public static void configure(int sessions , int ratePerSecond , int rateBurst , int outboundBytes) {
+        maxSessions = sessions;
+        messagesPerSecond = ratePerSecond;
+        burst = Math.max(1 , rateBurst);
+        maxOutboundBytes = outboundBytes;
+    }
+
+    // Static method to take a connection slot, returning false when the server is full
+    static boolean tryAdmit() {
+        int limit = maxSessions;
+        if (limit <= 0) {
+            open.incrementAndGet();
+            return true;
+        }
+        while (true) {
+            int current = open.get();
+            if (current >= limit) return false;
+            if (open.compareAndSet(current , current + 1)) return true;
+        }
+    }
+
+    // Static method to give a connection slot back, once per admitted connection
+    static void release() {
+        open.decrementAndGet();
+    }
+
+    // Static method to get the number of admitted connections
+    public static int open() {
+        return open.get();
+    }
+
+    // Static method to turn away a connection the server has no room for
+    static void reject(Socket socket) {
+        Metrics.connectionRejected();
+        try (socket) {
+            socket.getOutputStream().write(SERVER_FULL);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Static method to turn away a non-blocking connection the server has no room for.
+    // Freshly accepted channels are still blocking, and the line always fits the empty socket buffer.
+    static void reject(SocketChannel channel) {
+        Metrics.connectionRejected();
+        try (channel) {
+            channel.write(ByteBuffer.wrap(SERVER_FULL));
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Static method to create the inbound rate limiter of a new session, or null when there is no limit
+    static TokenBucket newRateLimiter() {
+        int rate = messagesPerSecond;
+        return rate > 0 ? new TokenBucket(rate , burst) : null;
+    }
+
+    // Static method to get how many unsent bytes a connection may hold
+    static int maxOutboundBytes() {
+        return maxOutboundBytes;
+    }
+}
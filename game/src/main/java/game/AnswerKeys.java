@@ -0,0 +1,130 @@
+package game;
+
+import java.nio.ByteBuffer;
+
+// Answer keys of a question bank, compiled once when the catalog is loaded.
+// A choice question's key is a bitmask with bit i set when option i + 1 is correct, and an answer is the
+// letters of the chosen options ("B", or "AC" for a multi-select), compared as a mask of the same shape.
+// Questions with a single correct option, by far the most common, also keep that option's letter, so their
+// answer is checked with one table load and one compare. A numeric question has no options and its key is
+// the range of accepted values, in fixed point so checking needs no floating point.
+// Each question's key is a fixed-size record in a ByteBuffer indexed by question number, mapped from the
+// question store for a large bank, so checking allocates nothing and the keys take no heap.
+final class AnswerKeys {
+
+    static final int MAX_OPTIONS = 26; // Options are answered with the letters A to Z
+    static final long SCALE = 1_000_000; // Fixed point scale of numeric keys and answers, 6 decimal places
+    static final int KEY_SIZE = 24; // Bytes per question: mask, letter, weight, 2 unused, lowest and highest value
+    private static final long INVALID = Long.MIN_VALUE; // Parsed value of an answer that is not a number
+    private static final int MAX_NUMBER_LENGTH = 24; // Longest numeric answer read, longer ones are wrong
+    private static final byte NO_LETTER = -1; // Letter of a question without a single correct option, matches no answer
+
+    // Offsets of the fields in a key record
+    private static final int MASK = 0; // Correct options, 0 for a numeric question
+    private static final int LETTER = 4; // Upper-case letter of the correct option, NO_LETTER if not a single one
+    private static final int WEIGHT = 5; // Points multiplier
+    private static final int LOW = 8; // Lowest accepted value of a numeric question, in SCALE units
+    private static final int HIGH = 16; // Highest accepted value of a numeric question, in SCALE units
+
+    private final ByteBuffer keys; // One KEY_SIZE record per question, only read with absolute gets
+
+    AnswerKeys(ByteBuffer keys) {
+        this.keys = keys;
+    }
+
+    // Static method to compile the answer keys of the questions
+    static AnswerKeys compile(Quiz[] quizzes) {
+        ByteBuffer keys = ByteBuffer.allocateDirect(quizzes.length * KEY_SIZE);
+        for (Quiz quiz : quizzes) {
+            put(keys , quiz);
+        }
+        return new AnswerKeys(keys.flip());
+    }
+
+    // Static method to write the key record of a question at the buffer's position
+    static void put(ByteBuffer keys , Quiz quiz) {
+        int start = keys.position();
+        keys.putInt(start + MASK , quiz.CorrectAnswers);
+        keys.put(start + LETTER , Integer.bitCount(quiz.CorrectAnswers) == 1 ? (byte) ('A' + quiz.CorrectAnswer - 1) : NO_LETTER);
+        keys.put(start + WEIGHT , (byte) quiz.Weight);
+        keys.putShort(start + WEIGHT + 1 , (short) 0);
+        keys.putLong(start + LOW , quiz.isNumeric() ? toFixed(quiz.Value - quiz.Tolerance) : 0);
+        keys.putLong(start + HIGH , quiz.isNumeric() ? toFixed(quiz.Value + quiz.Tolerance) : 0);
+        keys.position(start + KEY_SIZE);
+    }
+
+    // Method to check an answer to a question, read straight from the received bytes
+    boolean isCorrect(int question , byte[] response , int offset , int length) {
+        int key = question * KEY_SIZE;
+        byte letter = keys.get(key + LETTER);
+        if (letter != NO_LETTER) {
+            // A single letter, compared ignoring case (clearing bit 5 upper-cases ASCII letters only)
+            return length == 1 && (response[offset] & 0xDF) == letter;
+        }
+        int mask = keys.getInt(key + MASK);
+        if (mask == 0) {
+            long value = parseFixed(response , offset , length);
+            return value != INVALID & value >= keys.getLong(key + LOW) & value <= keys.getLong(key + HIGH);
+        }
+        return choices(response , offset , length) == mask;
+    }
+
+    // Method to get the points multiplier of a question
+    int weight(int question) {
+        return keys.get(question * KEY_SIZE + WEIGHT);
+    }
+
+    // Static method to get the mask of the options an answer chooses, e.g. "AC", "a,c" or "C A"; -1 if it is not letters
+    static int choices(byte[] response , int offset , int length) {
+        int mask = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = response[i];
+            if (b == ',' || b == ' ') continue;
+            int letter = (b & 0xDF) - 'A';
+            if (letter < 0 || letter >= MAX_OPTIONS) return -1;
+            mask |= 1 << letter;
+        }
+        return mask;
+    }
+
+    // Static method to read a decimal number such as "-12.5" in SCALE units, or INVALID if it is not one.
+    // Digits after the sixth decimal place are ignored.
+    static long parseFixed(byte[] array , int offset , int length) {
+        if (length < 1 || length > MAX_NUMBER_LENGTH) return INVALID;
+        int i = offset;
+        int end = offset + length;
+        boolean negative = array[i] == '-';
+        if (negative || array[i] == '+') i++;
+        long units = 0;
+        int digits = 0;
+        int decimals = -1; // Decimal places read so far, -1 before the decimal point
+        for (; i < end; i++) {
+            byte b = array[i];
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) return INVALID;
+            digits++;
+            if (decimals >= 6) continue;
+            if (decimals >= 0) {
+                decimals++;
+            } else if (digits > 12) {
+                // 12 integer digits at most, so the scaled value cannot overflow
+                return INVALID;
+            }
+            units = units * 10 + digit;
+        }
+        if (digits == 0) return INVALID;
+        for (int d = Math.max(decimals , 0); d < 6; d++) {
+            units *= 10;
+        }
+        return negative ? -units : units;
+    }
+
+    // Static method to convert a number of a catalog key to SCALE units
+    private static long toFixed(double value) {
+        return Math.round(value * SCALE);
+    }
+}
@@ -0,0 +1,271 @@
+package game;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Compact binary framing, negotiated by a client that sends MAGIC as its very first byte.
+// Clients that start with anything else keep using the EVENT;;payload text protocol.
+//
+// Frame:  varint length | opcode (1 byte) | fields      (length covers opcode and fields)
+// Fields: varint for IDs and points, varint length + UTF-8 bytes for text, one byte for flags
+//
+//   REGISTER       client: name, surname, age            server: client id, resume token
+//   QUIZ           client: (empty)                       server: quiz text (real newlines, no ;n; escaping)
+//   ANSWER_QUIZ    client: answer
+//   NEXT_QUIZ      client: (empty)
+//   QUIT           client: (empty)                       server: (empty)
+//   RESULT_ANSWER                                        server: correct flag, points, answer time in ms
+//   ERROR                                                server: message
+//   JOIN_ROOM      client: room name                     server: room name
+//   LEADERBOARD    client: k                             server: count, then rank, name, points per player
+//   RANK                                                 server: rank, players on the board
+//   RESUME         client: client id, resume token       server: client id, points
+//   PING           client: (empty)                       server: (empty)          (answered with PONG)
+//   PONG           client: (empty)                       server: (empty)
+//   PREFETCH       client: questions to hold ahead       server: questions held ahead (0 = one per request)
+public final class BinaryProtocol {
+
+    public static final int MAGIC = 0xB1; // Handshake byte, never the start of a valid text line
+    public static final int MAX_FRAME_LENGTH = 64 * 1024; // Longest frame accepted before the peer is dropped
+
+    public static final byte REGISTER = 1;
+    public static final byte QUIZ = 2;
+    public static final byte ANSWER_QUIZ = 3;
+    public static final byte NEXT_QUIZ = 4;
+    public static final byte QUIT = 5;
+    public static final byte RESULT_ANSWER = 6;
+    public static final byte ERROR = 7;
+    public static final byte JOIN_ROOM = 8;
+    public static final byte LEADERBOARD = 9;
+    public static final byte RANK = 10;
+    public static final byte RESUME = 11;
+    public static final byte PING = 12;
+    public static final byte PONG = 13;
+    public static final byte PREFETCH = 14;
+
+    public static final byte MAX_OPCODE = PREFETCH; // Highest opcode in use
+
+    private BinaryProtocol() {
+    }
+
+    // Static method to encode a frame without fields
+    public static byte[] frame(byte opcode) {
+        byte[] frame = allocate(1);
+        writeHeader(frame , 1 , opcode);
+        return frame;
+    }
+
+    // Static method to encode a frame holding a single number
+    public static byte[] frame(byte opcode , long number) {
+        int bodyLength = 1 + varintSize(number);
+        byte[] frame = allocate(bodyLength);
+        int position = writeHeader(frame , bodyLength , opcode);
+        writeVarint(frame , position , number);
+        return frame;
+    }
+
+    // Static method to encode a frame holding two numbers
+    public static byte[] frame(byte opcode , long first , long second) {
+        int bodyLength = 1 + varintSize(first) + varintSize(second);
+        byte[] frame = allocate(bodyLength);
+        int position = writeHeader(frame , bodyLength , opcode);
+        writeVarint(frame , writeVarint(frame , position , first) , second);
+        return frame;
+    }
+
+    // Static method to encode a frame holding text fields
+    public static byte[] frame(byte opcode , String... texts) {
+        byte[][] encoded = new byte[texts.length][];
+        int bodyLength = 1;
+        for (int i = 0; i < texts.length; i++) {
+            encoded[i] = texts[i].getBytes(StandardCharsets.UTF_8);
+            bodyLength += varintSize(encoded[i].length) + encoded[i].length;
+        }
+
+        byte[] frame = allocate(bodyLength);
+        int position = writeHeader(frame , bodyLength , opcode);
+        for (byte[] text : encoded) {
+            position = writeVarint(frame , position , text.length);
+            System.arraycopy(text , 0 , frame , position , text.length);
+            position += text.length;
+        }
+        return frame;
+    }
+
+    // Static method to write a complete RESULT_ANSWER frame into a reusable buffer, returning its length
+    public static int writeResultAnswer(byte[] out , boolean correct , int points , long answerMillis) {
+        int bodyLength = 2 + varintSize(points) + varintSize(answerMillis);
+        int position = writeHeader(out , bodyLength , RESULT_ANSWER);
+        out[position++] = (byte) (correct ? 1 : 0);
+        position = writeVarint(out , position , points);
+        return writeVarint(out , position , answerMillis);
+    }
+
+    // Static method to write a complete RANK frame into a reusable buffer, returning its length
+    public static int writeRank(byte[] out , int rank , int players) {
+        int bodyLength = 1 + varintSize(rank) + varintSize(players);
+        int position = writeHeader(out , bodyLength , RANK);
+        position = writeVarint(out , position , rank);
+        return writeVarint(out , position , players);
+    }
+
+    // Static method to encode a LEADERBOARD frame
+    public static byte[] leaderboard(List<Leaderboard.Ranked> top) {
+        byte[][] names = new byte[top.size()][];
+        int bodyLength = 1 + varintSize(top.size());
+        for (int i = 0; i < names.length; i++) {
+            Leaderboard.Ranked entry = top.get(i);
+            names[i] = entry.name.getBytes(StandardCharsets.UTF_8);
+            bodyLength += varintSize(entry.rank) + varintSize(names[i].length) + names[i].length + varintSize(entry.score);
+        }
+
+        byte[] frame = allocate(bodyLength);
+        int position = writeHeader(frame , bodyLength , LEADERBOARD);
+        position = writeVarint(frame , position , top.size());
+        for (int i = 0; i < names.length; i++) {
+            Leaderboard.Ranked entry = top.get(i);
+            position = writeVarint(frame , position , entry.rank);
+            position = writeVarint(frame , position , names[i].length);
+            System.arraycopy(names[i] , 0 , frame , position , names[i].length);
+            position = writeVarint(frame , position + names[i].length , entry.score);
+        }
+        return frame;
+    }
+
+    // Static method to get the number of bytes a varint takes
+    public static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    // Static method to write a varint, returning the position after it
+    public static int writeVarint(byte[] array , int position , long value) {
+        while ((value & ~0x7FL) != 0) {
+            array[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        array[position++] = (byte) value;
+        return position;
+    }
+
+    private static byte[] allocate(int bodyLength) {
+        return new byte[varintSize(bodyLength) + bodyLength];
+    }
+
+    private static int writeHeader(byte[] frame , int bodyLength , byte opcode) {
+        int position = writeVarint(frame , 0 , bodyLength);
+        frame[position++] = opcode;
+        return position;
+    }
+
+    // Cursor over the fields of one received frame, reusable across frames
+    public static final class Reader {
+
+        private byte[] array; // Bytes holding the frame
+        private int position; // Next byte to read
+        private int limit; // End of the frame
+
+        // Method to point the reader at the body of a frame (opcode first)
+        public Reader reset(byte[] array , int offset , int length) {
+            this.array = array;
+            this.position = offset;
+            this.limit = offset + length;
+            return this;
+        }
+
+        // Method to read a single byte, such as the opcode or a flag
+        public byte readByte() {
+            if (position >= limit) throw new IllegalArgumentException("Truncated frame");
+            return array[position++];
+        }
+
+        // Method to read a varint
+        public long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        // Method to read a length-prefixed UTF-8 text field
+        public String readString() {
+            int length = readFieldLength();
+            String text = new String(array , position , length , StandardCharsets.UTF_8);
+            position += length;
+            return text;
+        }
+
+        // Method to read the length of a field, leaving the reader at its first byte.
+        // Lets callers look at the raw bytes (from position()) without creating a String.
+        public int readFieldLength() {
+            long length = readVarint();
+            if (length < 0 || length > limit - position) throw new IllegalArgumentException("Truncated frame");
+            return (int) length;
+        }
+
+        // Method to check if the frame has fields left to read, for optional trailing fields
+        public boolean hasRemaining() {
+            return position < limit;
+        }
+
+        // Method to get the offset of the next byte to read
+        public int position() {
+            return position;
+        }
+
+        // Method to skip over bytes that were read directly from the array
+        public void skip(int length) {
+            position += length;
+        }
+    }
+
+    // Static method to find a complete frame in a byte range.
+    // Returns the offset of the frame body, or -1 when more bytes are needed; the body length is stored in length[0].
+    public static int findFrame(byte[] array , int from , int to , int[] length) {
+        long value = 0;
+        int position = from;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position >= to) return -1;
+            byte b = array[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 1 || value > MAX_FRAME_LENGTH) throw new IllegalArgumentException("Invalid frame length: " + value);
+                if (to - position < value) return -1;
+                length[0] = (int) value;
+                return position;
+            }
+        }
+        throw new IllegalArgumentException("Malformed frame length");
+    }
+
+    // Static method to read the body of the next frame from a blocking stream, or null at end of stream
+    public static byte[] readFrame(InputStream input) throws IOException {
+        long length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = input.read();
+            if (b < 0) {
+                if (shift == 0) return null;
+                throw new EOFException("Truncated frame");
+            }
+            if (shift >= 35) throw new IOException("Malformed frame length");
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+        }
+        if (length < 1 || length > MAX_FRAME_LENGTH) throw new IOException("Invalid frame length: " + length);
+
+        byte[] body = new byte[(int) length];
+        new DataInputStream(input).readFully(body);
+        return body;
+    }
+}
@@ -0,0 +1,641 @@
+package game;
+
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Core of a game client: a single network reader thread decodes the server's messages and moves a small
+// state machine, and the front end is told about each event through a Listener. The front end sends the
+// player's choices with the command methods, which can be called from any thread and refuse what the
+// current state does not allow. Nothing polls: between messages the reader is blocked on the socket.
+// The listener runs on the reader thread and must not block it; a front end that waits for the player
+// hands the event over to its own thread, see ConsoleClient.
+//
+// With prefetch the server keeps questions with the client ahead of its answers (pipelined mode): the reply
+// to an answer carries its result and the next question, and a question already held is shown as soon as
+// the previous one is answered, without waiting for the server.
+public class Client {
+
+    // States of the client
+    public enum State {
+        REGISTERING , // Connected, waiting for the player's details or the server's REGISTER or RESUME reply
+        MENU , // Registered, nothing open: the player can ask for a quiz, join a room, see the leaderboard or quit
+        WAITING , // A request is on its way, waiting for the server's reply
+        ANSWERING , // A question is open
+        IN_ROOM , // In a room, waiting for the room's next question
+        CLOSED // The connection is closed
+    }
+
+    // Callbacks of a front end. They are called on the network reader thread, except that stateChanged, and
+    // question for a question held ahead, are called on the thread of the command that moved the client.
+    public interface Listener {
+        void stateChanged(State state);
+
+        void registered(String clientId , String resumeToken);
+
+        void resumed(String clientId , String points);
+
+        void question(String quiz);
+
+        // answerMillis is null over the text protocol, which does not report it
+        void result(boolean correct , String points , String answerMillis);
+
+        void joinedRoom(String room);
+
+        void leaderboard(List<Leaderboard.Ranked> top);
+
+        void rank(long rank , long players);
+
+        void error(String message);
+
+        // Anything else worth showing, e.g. a message the client cannot parse or why the connection closed
+        void notice(String message);
+    }
+
+    // Attributes
+    private final Socket socket; // The socket used to communicate with the server
+    private final boolean binary; // Whether to talk the binary protocol instead of text lines
+    private final Listener listener; // Front end told about every event
+    private final Object writeLock = new Object(); // Serializes writes from the reader and the command callers
+    private OutputStream output; // Stream to send lines or binary frames to the server
+    private volatile State state = State.REGISTERING; // Current state, moved under the lock of this client
+    private boolean first = true; // Flag to track if this is the first quiz
+    private boolean inRoom = false; // Flag to indicate that a room pushes the questions
+    private volatile String clientId; // The unique identifier assigned to this client
+    private volatile String resumeToken; // Secret that lets a new connection RESUME this session
+    private String resume; // "clientId,token" of the session being resumed, or null
+    private int prefetchRequest; // Questions to ask the server to keep ahead once registered, 0 for none
+    private volatile int prefetch; // Questions the server agreed to keep ahead, 0 when not pipelined
+    private volatile String tag; // Tag of the questions to be asked, e.g. a category or a difficulty, null for any
+    private final ArrayDeque<String> held = new ArrayDeque<>(); // Questions received ahead of the open one, guarded by this
+
+
+    // Constructor (the socket is used once start is called)
+    public Client(Socket socket , boolean binary , Listener listener) {
+        this.socket = socket;
+        this.binary = binary;
+        this.listener = listener;
+    }
+
+
+    // Static method to create and manage a new console Client
+    public static void manage(Socket socket) {
+        manage(socket , false);
+    }
+
+    // Static method to create and manage a new console Client, optionally using the binary protocol
+    public static void manage(Socket socket , boolean binary) {
+        manage(socket , binary , null);
+    }
+
+    // Static method to create and manage a new console Client that resumes a session ("clientId,token") if given
+    public static void manage(Socket socket , boolean binary , String resume) {
+        manage(socket , binary , resume , 0);
+    }
+
+    // Static method to create and manage a new console Client that also holds prefetch questions ahead if above 0
+    public static void manage(Socket socket , boolean binary , String resume , int prefetch) {
+        manage(socket , binary , resume , prefetch , null);
+    }
+
+    // Static method to create and manage a new console Client that is only asked questions with a tag if given
+    public static void manage(Socket socket , boolean binary , String resume , int prefetch , String tag) {
+        ConsoleClient console = new ConsoleClient();
+        Client client = new Client(socket , binary , console);
+        client.requestPrefetch(prefetch);
+        client.playTag(tag);
+        try {
+            client.start();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        console.start(client , resume);
+    }
+
+
+    // Method to open the streams and start the network reader thread
+    public void start() throws IOException {
+        output = socket.getOutputStream();
+        InputStream input = socket.getInputStream();
+        // Ask the server for the binary protocol before anything else
+        if (binary) output.write(BinaryProtocol.MAGIC);
+        Thread reader = new Thread(() -> read(input) , "client-reader");
+        reader.start();
+    }
+
+    // Method to ask the server, once registered, to keep n questions with the client ahead of its answers
+    public void requestPrefetch(int n) {
+        prefetchRequest = n;
+    }
+
+    // Method to only be asked the questions with a tag from the next quiz on, null for any question
+    public void playTag(String tag) {
+        this.tag = tag;
+    }
+
+    // Method to get how many questions the server keeps ahead, 0 when not pipelined
+    public int prefetch() {
+        return prefetch;
+    }
+
+    // Method to get the current state
+    public State state() {
+        return state;
+    }
+
+    // Method to get the client ID, or null before registering
+    public String clientId() {
+        return clientId;
+    }
+
+    // Method to get the resume token of the session, or null
+    public String resumeToken() {
+        return resumeToken;
+    }
+
+    // Method to register the player
+    public boolean register(String name , String surname , String age) {
+        if (!move(State.REGISTERING , State.WAITING)) return false;
+        if (binary) {
+            sendFrame(BinaryProtocol.frame(BinaryProtocol.REGISTER , name , surname , age));
+        } else {
+            sendMessage("REGISTER" , String.format("%s,%s,%s" , name , surname , age));
+        }
+        return true;
+    }
+
+    // Method to continue a session that lost its connection ("clientId,token") instead of registering again
+    public boolean resume(String session) {
+        String[] split = session.split(",");
+        if (split.length != 2 || !move(State.REGISTERING , State.WAITING)) return false;
+        resume = session;
+        if (binary) {
+            sendFrame(BinaryProtocol.frame(BinaryProtocol.RESUME , Long.parseLong(split[0]) , Long.parseLong(split[1])));
+        } else {
+            sendMessage("RESUME" , session);
+        }
+        return true;
+    }
+
+    // Method to ask for the next question, the first one starts the quiz over
+    public boolean quiz() {
+        if (!move(State.MENU , State.WAITING)) return false;
+        if (first && tag != null) {
+            // The quiz draws its questions from the tag
+            if (binary) {
+                sendFrame(BinaryProtocol.frame(BinaryProtocol.QUIZ , tag));
+            } else {
+                sendMessage("QUIZ" , tag);
+            }
+        } else if (first) {
+            sendEvent("QUIZ" , BinaryProtocol.QUIZ);
+        } else {
+            sendEvent("NEXT_QUIZ" , BinaryProtocol.NEXT_QUIZ);
+        }
+        return true;
+    }
+
+    // Method to answer the open question
+    public boolean answer(String answer) {
+        String next;
+        synchronized (this) {
+            if (state != State.ANSWERING) return false;
+            // Go straight on to a question held ahead, if any
+            next = held.poll();
+            state = next != null ? State.ANSWERING : State.WAITING;
+        }
+        if (binary) {
+            sendFrame(BinaryProtocol.frame(BinaryProtocol.ANSWER_QUIZ , answer));
+        } else {
+            sendMessage("ANSWER_QUIZ" , answer);
+        }
+        if (next != null) listener.question(next);
+        listener.stateChanged(next != null ? State.ANSWERING : State.WAITING);
+        return true;
+    }
+
+    // Method to join a room, its questions are pushed to every member at the same time
+    public boolean joinRoom(String room) {
+        synchronized (this) {
+            if (state != State.MENU) return false;
+            inRoom = true;
+        }
+        enter(State.IN_ROOM);
+        if (binary) {
+            sendFrame(BinaryProtocol.frame(BinaryProtocol.JOIN_ROOM , room));
+        } else {
+            sendMessage("JOIN_ROOM" , room);
+        }
+        return true;
+    }
+
+    // Method to ask for the best k players on the server
+    public boolean leaderboard(int k) {
+        State current = state;
+        if (current == State.REGISTERING || current == State.CLOSED) return false;
+        if (binary) {
+            sendFrame(BinaryProtocol.frame(BinaryProtocol.LEADERBOARD , k));
+        } else {
+            sendMessage("LEADERBOARD" , String.valueOf(k));
+        }
+        return true;
+    }
+
+    // Method to quit the game and close the connection
+    public void quit() {
+        if (state == State.CLOSED) return;
+        sendEvent("QUIT" , BinaryProtocol.QUIT);
+        close();
+    }
+
+    // Method to close the connection without quitting, a registered session can be resumed
+    public void close() {
+        enter(State.CLOSED);
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Method run by the network reader thread: decode messages until the connection closes
+    private void read(InputStream stream) {
+        String reason = "Connection closed by the server";
+        try {
+            if (binary) {
+                InputStream frames = new BufferedInputStream(stream);
+                byte[] frame;
+                while ((frame = BinaryProtocol.readFrame(frames)) != null) {
+                    binaryMessageHandler(frame);
+                }
+            } else {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(stream , StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    messageHandler(line);
+                }
+            }
+        } catch (IOException e) {
+            reason = String.format("Connection error: %s" , e.getMessage());
+        }
+        // Nothing to report when the client closed the connection itself
+        if (state != State.CLOSED) {
+            listener.notice(reason);
+            close();
+        }
+    }
+
+    // Method to handle incoming messages from the Server
+    void messageHandler(String message) {
+        try {
+            // Split the incoming message into two parts using the ";;" separator
+            final String[] split = message.split(";;");
+
+            if (split.length != 2) {
+                // If the message format is invalid, show it and throw an Exception
+                listener.notice(String.format("Fail to handler message: %s" , message));
+                throw new Exception("Fail to handler message");
+            }
+
+            // Extract the event name and message content from the split parts
+            String eventName = split[0];
+            String msg = split[1].replace(";n;" , "\n");
+
+            // Handle the event based on its name
+            switch (eventName) {
+                case "REGISTER":
+                    // Handle the registration response from the Server and set clientId
+                    String[] registration = msg.split(",");
+                    registered(registration[0] , registration.length > 1 ? registration[1] : null);
+                    break;
+                case "PING":
+                    // Answer the server's heartbeat, it drops clients that stay silent
+                    sendMessage("PONG" , "true");
+                    break;
+                case "RESUME":
+                    String[] resumed = msg.split(",");
+                    resumed(resumed[0] , resumed.length > 1 ? resumed[1] : "0");
+                    break;
+                case "QUIZ":
+                    // Handle a new quiz received from the Server
+                    newQuiz(msg);
+                    break;
+                case "RESULT_ANSWER":
+                    // Handle the response to a quiz answer from the Server
+                    resultAnswer(msg);
+                    break;
+                case "QUIT":
+                    // Handle the quit message from the Server
+                    close(); // Close the socket to terminate the connection
+                    break;
+                case "JOIN_ROOM":
+                    listener.joinedRoom(msg);
+                    break;
+                case "ERROR":
+                    error(msg);
+                    break;
+                case "LEADERBOARD":
+                    List<Leaderboard.Ranked> top = new ArrayList<>();
+                    for (String line : msg.split("\n")) {
+                        String[] entry = line.split(",");
+                        if (entry.length == 3) top.add(new Leaderboard.Ranked(Integer.parseInt(entry[0]) , entry[1] , Integer.parseInt(entry[2])));
+                    }
+                    listener.leaderboard(top);
+                    break;
+                case "RANK":
+                    String[] rank = msg.split(",");
+                    if (rank.length == 2) listener.rank(Long.parseLong(rank[0]) , Long.parseLong(rank[1]));
+                    break;
+                case "PREFETCH":
+                    // The server agreed to pipeline, possibly with fewer questions ahead than asked
+                    prefetch = Integer.parseInt(msg);
+                    break;
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Method to handle the response to a quiz answer from the Server
+    void resultAnswer(String msg) {
+
+        // Split the quiz result and points from the message using the "," separator.
+        // Text results carry no answer time, binary ones do.
+        String[] split = msg.split(",");
+
+        if (split.length != 2) {
+            // If the message format is invalid, show the result answer
+            listener.notice(String.format("Result answer: %s" , msg));
+            return;
+        }
+
+        String result = split[0];
+        String points = split[1];
+
+        if (result.equalsIgnoreCase("yes")) {
+            showResult(true , points , null);
+        } else if (result.equalsIgnoreCase("no")) {
+            showResult(false , points , null);
+        } else {
+            listener.notice(String.format("Result answer: %s" , msg));
+            // Allow the Client to answer the next quiz
+            first = false;
+            answered(false);
+        }
+    }
+
+    // Method to show the result of an answer and get ready for the next quiz
+    private void showResult(boolean correct , String points , String answerMillis) {
+        listener.result(correct , points , answerMillis);
+        first = false;
+        // In a room, the room sends the next question by itself
+        answered(inRoom);
+    }
+
+    // Method to go back to the menu, or to waiting for the room, once an answer is scored
+    private void answered(boolean room) {
+        // Pipelined, the next question comes with the result or is already held
+        if (prefetch > 0 && !room) return;
+        State next = room ? State.IN_ROOM : State.MENU;
+        if (!move(State.WAITING , next)) move(State.ANSWERING , next);
+    }
+
+    // Method to record the registration and allow the Client to play
+    private void registered(String id , String token) {
+        clientId = id;
+        resumeToken = token;
+        listener.registered(clientId , resumeToken);
+        sendPrefetch();
+        move(State.WAITING , State.MENU);
+    }
+
+    // Method to continue a resumed session, the next quiz request picks up where it stopped
+    private void resumed(String id , String points) {
+        clientId = id;
+        resumeToken = resume.substring(resume.indexOf(',') + 1);
+        first = false;
+        listener.resumed(clientId , points);
+        sendPrefetch();
+        move(State.WAITING , State.MENU);
+    }
+
+    // Method to ask for pipelined mode if wanted, before the player can ask for a question
+    private void sendPrefetch() {
+        if (prefetchRequest <= 0) return;
+        if (binary) {
+            sendFrame(BinaryProtocol.frame(BinaryProtocol.PREFETCH , prefetchRequest));
+        } else {
+            sendMessage("PREFETCH" , String.valueOf(prefetchRequest));
+        }
+    }
+
+    // Method to handle an error from the Server, e.g. the end of a room game or a refused request
+    private void error(String msg) {
+        listener.error(msg);
+        boolean left;
+        synchronized (this) {
+            left = inRoom;
+            inRoom = false;
+            // Out of questions, the next quiz starts over
+            if (msg.endsWith("Game ended")) first = true;
+        }
+        if (left) {
+            // Leaving the room, go back to the menu
+            if (!move(State.IN_ROOM , State.MENU) && !move(State.ANSWERING , State.MENU)) move(State.WAITING , State.MENU);
+        } else if (state == State.WAITING) {
+            // The request was refused, e.g. a failed registration or the end of the questions
+            move(State.WAITING , clientId == null ? State.REGISTERING : State.MENU);
+        }
+    }
+
+    // Method to handle incoming binary frames from the Server
+    void binaryMessageHandler(byte[] frame) {
+        try {
+            BinaryProtocol.Reader reader = new BinaryProtocol.Reader().reset(frame , 0 , frame.length);
+
+            // Handle the event based on its opcode
+            switch (reader.readByte()) {
+                case BinaryProtocol.REGISTER:
+                    // Handle the registration response from the Server and set clientId
+                    String id = String.valueOf(reader.readVarint());
+                    registered(id , String.valueOf(reader.readVarint()));
+                    break;
+                case BinaryProtocol.PING:
+                    // Answer the server's heartbeat, it drops clients that stay silent
+                    sendFrame(BinaryProtocol.frame(BinaryProtocol.PONG));
+                    break;
+                case BinaryProtocol.RESUME:
+                    resumed(String.valueOf(reader.readVarint()) , String.valueOf(reader.readVarint()));
+                    break;
+                case BinaryProtocol.QUIZ:
+                    // Handle a new quiz received from the Server
+                    newQuiz(reader.readString());
+                    break;
+                case BinaryProtocol.RESULT_ANSWER:
+                    // Handle the response to a quiz answer from the Server
+                    boolean correct = reader.readByte() != 0;
+                    String points = String.valueOf(reader.readVarint());
+                    showResult(correct , points , String.valueOf(reader.readVarint()));
+                    break;
+                case BinaryProtocol.QUIT:
+                    // Handle the quit message from the Server
+                    close(); // Close the socket to terminate the connection
+                    break;
+                case BinaryProtocol.JOIN_ROOM:
+                    listener.joinedRoom(reader.readString());
+                    break;
+                case BinaryProtocol.ERROR:
+                    error(reader.readString());
+                    break;
+                case BinaryProtocol.LEADERBOARD:
+                    List<Leaderboard.Ranked> top = new ArrayList<>();
+                    for (long count = reader.readVarint(); count > 0; count--) {
+                        int rank = (int) reader.readVarint();
+                        String name = reader.readString();
+                        top.add(new Leaderboard.Ranked(rank , name , (int) reader.readVarint()));
+                    }
+                    listener.leaderboard(top);
+                    break;
+                case BinaryProtocol.RANK:
+                    long rank = reader.readVarint();
+                    listener.rank(rank , reader.readVarint());
+                    break;
+                case BinaryProtocol.PREFETCH:
+                    // The server agreed to pipeline, possibly with fewer questions ahead than asked
+                    prefetch = (int) reader.readVarint();
+                    break;
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Method to handle a new quiz received from the Server; the answer comes later through answer()
+    private void newQuiz(final String quiz) {
+        // Open the question before showing it, so an answer sent as soon as the front end shows it is accepted,
+        // but only report the new state once the question is shown
+        synchronized (this) {
+            if (state == State.CLOSED) return;
+            if (prefetch > 0 && !inRoom && state == State.ANSWERING) {
+                // Pipelined, the player is still on an earlier question
+                held.add(quiz);
+                return;
+            }
+            state = State.ANSWERING;
+        }
+        listener.question(quiz);
+        listener.stateChanged(State.ANSWERING);
+    }
+
+    // Method to move from one state to another, returning false when the client is not in the first one
+    private boolean move(State from , State to) {
+        synchronized (this) {
+            if (state != from) return false;
+            state = to;
+        }
+        listener.stateChanged(to);
+        return true;
+    }
+
+    // Method to move to a state whatever the current one, unless the connection is closed
+    private void enter(State to) {
+        synchronized (this) {
+            if (state == to || state == State.CLOSED) return;
+            state = to;
+        }
+        listener.stateChanged(to);
+    }
+
+    // Method to send an event without content to the Server
+    private void sendEvent(String eventName , byte opcode) {
+        if (binary) {
+            sendFrame(BinaryProtocol.frame(opcode));
+        } else {
+            sendMessage(eventName , "true");
+        }
+    }
+
+    // Method to send a message to the Server
+    private void sendMessage(String eventName , String message) {
+        sendFrame(String.format("%s;;%s\n" , eventName , message).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Method to send a binary frame or an encoded line to the Server
+    private void sendFrame(byte[] frame) {
+        try {
+            synchronized (writeLock) {
+                output.write(frame);
+            }
+        } catch (IOException e) {
+            // The reader sees the connection go and reports it
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Entry point of the Client application
+    // Usage: Client [--binary] [--resume=clientId,token] [--prefetch=N] [--tag=name]
+    //               [--tls [--tls-truststore=server.p12 --tls-password=SECRET]]
+    // Without a trust store the server's certificate is checked against the JDK's default trusted authorities.
+    public static void main(String[] args) {
+        boolean binary = false;
+        String resume = null;
+        int prefetch = 0;
+        String tag = null;
+        boolean tls = false;
+        Path trustStore = null;
+        String trustStorePassword = "";
+        for (String arg : args) {
+            if (arg.equals("--binary")) {
+                binary = true;
+            } else if (arg.startsWith("--resume=")) {
+                resume = arg.substring("--resume=".length());
+            } else if (arg.startsWith("--prefetch=")) {
+                prefetch = Integer.parseInt(arg.substring("--prefetch=".length()));
+            } else if (arg.startsWith("--tag=")) {
+                tag = arg.substring("--tag=".length());
+            } else if (arg.equals("--tls")) {
+                tls = true;
+            } else if (arg.startsWith("--tls-truststore=")) {
+                tls = true;
+                trustStore = Paths.get(arg.substring("--tls-truststore=".length()));
+            } else if (arg.startsWith("--tls-password=")) {
+                trustStorePassword = arg.substring("--tls-password=".length());
+            }
+        }
+        try {
+            System.out.println("Connecting to localhost:8888");
+            // Create a socket to connect to the server running on localhost at port 8888, encrypted if asked
+            Socket socket;
+            if (tls) {
+                SSLSocket secure = Tls.connect(Tls.clientContext(trustStore , trustStorePassword.toCharArray()) , "localhost" , 8888);
+                // Handshake now, so a certificate problem is reported before the game starts
+                secure.startHandshake();
+                socket = secure;
+            } else {
+                socket = new Socket("localhost" , 8888);
+            }
+            System.out.println("Connected to localhost:8888");
+            // Create and manage a new Client instance
+            Client.manage(socket , binary , resume , prefetch , tag);
+        } catch (IOException | GeneralSecurityException e) {
+            // If there's an error while connecting to the server, print the stack trace
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,982 @@
+package game;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ClientManager implements Runnable {
+    // Static registry of the connected clients, which also hands out their unique IDs
+    private static final SessionRegistry clients = new SessionRegistry();
+
+    // Executor shared by every blocking session, replaced by Server when running on virtual threads
+    private static ExecutorService executor = Executors.newCachedThreadPool();
+
+    // Disconnected sessions that can still be resumed, replaced by Server to apply its limits
+    private static SessionCache parked = new SessionCache(100_000 , 2 , TimeUnit.MINUTES);
+
+    // Static timer tracking the read deadline of every session, one tick per second
+    private static final HashedWheelTimer idleTimer = new HashedWheelTimer("idle-timer" , 1 , TimeUnit.SECONDS , 512);
+
+    private static final int DISPATCH_SAMPLE = 16; // One message in this many is timed, a power of two
+
+    // Pre-encoded heartbeat messages, shared by every session
+    private static final byte[] PING_LINE = "PING;;true\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PING_FRAME = BinaryProtocol.frame(BinaryProtocol.PING);
+    private static final byte[] PONG_LINE = "PONG;;true\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PONG_FRAME = BinaryProtocol.frame(BinaryProtocol.PONG);
+
+    // Silence after which a session is sent a PING, and after which it is evicted, in timer ticks (0 = never)
+    private static volatile long pingTicks = idleTimer.toTicks(30 , TimeUnit.SECONDS);
+    private static volatile long idleTicks = idleTimer.toTicks(90 , TimeUnit.SECONDS);
+
+    // Source of the resume tokens handed out at registration
+    private static final SecureRandom tokens = new SecureRandom();
+
+    // Largest top-K a client may ask for with LEADERBOARD
+    private static final int MAX_LEADERBOARD = 100;
+
+    // Most questions a client may hold ahead of its answers in pipelined mode, a power of two
+    private static final int MAX_PREFETCH = 16;
+
+    private long clientId; // The unique ID assigned to this client
+    private long token; // Secret the client presents to resume this session after a disconnect
+    private volatile boolean quitting; // Set by QUIT, a session that quit is not kept for resuming
+    private volatile long lastReadTick; // Idle timer tick of the last message received from the client
+    private int dispatchCount; // Messages handled, to pick the ones whose handling is timed
+    private final TokenBucket inbound = Admission.newRateLimiter(); // Inbound rate limit, null when there is none
+    private boolean throttled; // Whether the client was told it hit the rate limit since its last accepted message
+    private long pingedTick = -1; // Idle timer tick of the last PING sent, only used by the idle timer
+    private final Runnable checkIdle = this::checkIdle; // Reused idle timer task
+    private final Runnable sendPing = this::sendPing; // Reused task writing a PING
+    private final Runnable evict = this::evict; // Reused task closing an idle connection
+
+    private final Connection connection; // The transport used to talk to the client
+
+    private Participant participant; // Participant associated with this client
+
+    private final BinaryProtocol.Reader frameReader = new BinaryProtocol.Reader(); // Reused to decode binary frames
+    private final byte[] out = new byte[64]; // Reused to encode small replies such as RESULT_ANSWER
+
+    private QuizCatalog catalog; // Question bank this participant is playing, fixed when the quiz starts
+    private QuestionSampler sampler; // Draws the participant's questions at random without repeats, null before the quiz
+    private final int[] drawn = new int[MAX_PREFETCH]; // Questions drawn and not done with, a ring from drawnHead
+    private int drawnHead; // Position in drawn of the question the participant is attempting
+    private int drawnCount; // Questions in drawn: the current one and, in pipelined mode, the ones sent ahead
+    private boolean correctAnswer; // Flag to indicate whether the participant answered correctly
+    private long quizSentAt; // System.nanoTime() when the current question was sent, 0 once it is answered
+    private int prefetch; // Questions kept with the client ahead of its answers (pipelined mode), 0 for one per request
+
+    private volatile Room room; // Room the participant plays in, or null when playing alone
+    private volatile Cluster.RemoteRoom remoteRoom; // Room of another cluster node the participant plays in, or null
+    private volatile int roomAnswerRound = -1; // Last room round the participant answered
+    private volatile boolean roomAnswerCorrect; // Whether that answer was correct
+    private volatile long roomAnswerNanos; // Time that answer took, from the question to its receipt
+
+    private volatile int lastRank; // Rank last pushed to the client, 0 before the first push
+
+    // Private constructor (only called internally)
+    private ClientManager(Connection connection) {
+
+        this.connection = connection;
+    }
+
+    // Static method to choose the executor that runs blocking sessions and their reader loops
+    public static void useExecutor(ExecutorService sessionExecutor) {
+        executor = sessionExecutor;
+    }
+
+    // Static method to keep new client IDs above lastId, e.g. clear of the range of other cluster nodes
+    public static void reserveIds(long lastId) {
+        clients.reserveUpTo(lastId);
+    }
+
+    // Static method to bring back the participants of previous runs, each one parked as a disconnected session its
+    // player can RESUME with its points. Like any dropped player, it is back on the leaderboard once it resumes.
+    // Parked in ID order, so the newest ones are kept when there are more than the resume capacity.
+    public static void restore(Journal journal) {
+        clients.reserveUpTo(journal.lastId());
+        journal.forEachParticipant((id , resumeToken , stored) -> {
+            // A copy, the journal's own participant must not be modified
+            Participant participant = new Participant(stored.name() , stored.surname() , stored.age());
+            participant.setPoints(stored.Points);
+            parked.park(new SessionCache.Parked(id , resumeToken , participant , null , null , new int[0] , false));
+        });
+    }
+
+    // Static method to set how many disconnected sessions are kept for resuming, and for how long
+    public static void configureResume(int capacity , long ttlSeconds) {
+        parked = new SessionCache(capacity , ttlSeconds , TimeUnit.SECONDS);
+    }
+
+    // Static method to set when silent sessions are sent a PING and when they are evicted, 0 to turn either off
+    public static void configureHeartbeat(long pingSeconds , long idleSeconds) {
+        pingTicks = idleTimer.toTicks(pingSeconds , TimeUnit.SECONDS);
+        idleTicks = idleTimer.toTicks(idleSeconds , TimeUnit.SECONDS);
+    }
+
+    // Static method to get the number of connected sessions
+    public static int activeSessions() {
+        return clients.size();
+    }
+
+    // Static method to get the number of disconnected sessions kept for resuming
+    public static int parkedSessions() {
+        return parked.size();
+    }
+
+    // Static method to manage a new client connection.
+    // With TLS the socket is only wrapped here, the handshake happens on the session thread's first read.
+    public static void manage(Socket socket) {
+        final SocketConnection connection;
+        try {
+            connection = new SocketConnection(Tls.wrap(socket) , executor);
+        } catch (IOException e) {
+            // The client left before its session started
+            Log.debug("Fail to open client connection %s: %s" , socket , e.getMessage());
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            Admission.release();
+            return;
+        }
+
+        // Execute the ClientManager instance on the shared session executor
+        executor.execute(new ClientManager(connection));
+    }
+
+    // Static method to create the stand-in of a player connected to another node of the cluster,
+    // which plays the player in a room of this node. It is not a live session of this node.
+    static ClientManager proxy(ProxyConnection connection , long clientId , Participant participant) {
+        ClientManager proxy = new ClientManager(connection);
+        proxy.clientId = clientId;
+        proxy.participant = participant;
+        return proxy;
+    }
+
+    // Static method to look up a live session by its client ID, or null if it is gone
+    static ClientManager find(long clientId) {
+        return clients.get(clientId);
+    }
+
+    // Static method to start a session on a non-blocking connection, called from its event loop
+    static ClientManager attach(Connection connection) {
+        ClientManager clientManager = new ClientManager(connection);
+        clientManager.run();
+        return clientManager;
+    }
+
+    // Entry point for the ClientManager when it runs as a thread
+    @Override
+    public void run() {
+        // Generate a unique client ID for this client and store this ClientManager instance under it
+        clientId = clients.register(this);
+
+        // Start watching for a silent client
+        lastReadTick = idleTimer.currentTick();
+        scheduleIdleCheck();
+
+        // Start listening for incoming messages from the client.
+        // Non-blocking connections are fed by their event loop instead of a reader thread.
+        if (connection instanceof SocketConnection) onMessage((SocketConnection) connection);
+    }
+
+    // Method called by the transport once the connection is closed
+    void onClose() {
+        if (!clients.remove(clientId , this)) return; // Already closed
+        Leaderboard.global().remove(clientId);
+        Cluster.playerLeft(clientId);
+        Room current = room;
+        if (current != null) current.leave(this);
+        Cluster.RemoteRoom remote = remoteRoom;
+        if (remote != null) remote.leave(this);
+
+        // Keep the state of a registered player who dropped, so a new connection can RESUME it
+        if (participant != null && !quitting) {
+            parked.park(new SessionCache.Parked(clientId , token , participant , catalog , sampler , drawnQuestions() , correctAnswer));
+        }
+    }
+
+
+    // Method to handle incoming messages from the client
+    private void onMessage(SocketConnection connection) {
+        executor.execute(() -> {
+            boolean binary = false;
+            try {
+                // The first byte from the client decides between the text and the binary protocol
+                binary = connection.negotiate();
+            } catch (IOException | RuntimeException e) {
+                // Gone before sending anything, the loop below sees the closed connection
+                try {
+                    connection.close();
+                } catch (IOException ignored) {
+                }
+            }
+
+            while (connection.isOpen()) {
+                try {
+                    if (binary) {
+                        // Read a binary frame from the client
+                        int length = connection.readFrame();
+                        if (length < 0) break;
+                        binaryMessageHandler(connection.buffer() , connection.messageOffset() , length);
+                        continue;
+                    }
+                    // Read a line of message from the client
+                    int length = connection.readLine();
+                    if (length < 0) break;
+                    messageHandler(connection.buffer() , connection.messageOffset() , length);
+                } catch (IOException | RuntimeException e) {
+                    // The client is gone or misbehaved
+                    break;
+                }
+            }
+            // End of stream: release the socket and the session
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+            }
+            onClose();
+        });
+    }
+
+    // Method to handle incoming messages from the client and process them.
+    // The line is parsed in place, so the common events do not allocate.
+    void messageHandler(byte[] array , int offset , int length) {
+        lastReadTick = idleTimer.currentTick();
+        if (!admitMessage()) return;
+        if (Log.isTraceEnabled()) {
+            Log.trace("Receive new message from: %s , Message: %s" , clientId , new String(array , offset , length , StandardCharsets.UTF_8));
+        }
+        // Time one message in DISPATCH_SAMPLE, a clock read costs as much as handling a small message
+        long start = (++dispatchCount & (DISPATCH_SAMPLE - 1)) == 0 ? System.nanoTime() : 0;
+        DispatchEvent traced = startTrace();
+        byte opcode = TextProtocol.UNKNOWN;
+        boolean failed = false;
+
+        try {
+            // Find the ";;" separator between the event name and the message content
+            int delimiter = TextProtocol.indexOfDelimiter(array , offset , offset + length);
+
+            if (delimiter < 0) {
+                // If the message format is invalid, throw an Exception
+                throw new Exception("Fail to handler message");
+            }
+
+            // Map the event name to its opcode and locate the message content
+            opcode = TextProtocol.eventOpcode(array , offset , delimiter - offset);
+            int payload = delimiter + 2;
+            int payloadLength = offset + length - payload;
+
+            // If the participant is not registered yet, prevent handling other events
+            checkRegistered(opcode == BinaryProtocol.REGISTER || opcode == BinaryProtocol.RESUME || isHeartbeat(opcode));
+
+            // Handle the event based on its opcode
+            switch (opcode) {
+                case BinaryProtocol.REGISTER:
+                    register(new String(array , payload , payloadLength , StandardCharsets.UTF_8));
+                    break;
+                case BinaryProtocol.PING:
+                    connection.write(PONG_LINE);
+                    break;
+                case BinaryProtocol.PONG:
+                    // The client is alive, receiving it was enough
+                    break;
+                case BinaryProtocol.RESUME:
+                    int comma = payload;
+                    while (comma < payload + payloadLength && array[comma] != ',') comma++;
+                    if (comma == payload + payloadLength) throw new Exception("Invalid resume info");
+                    resume(TextProtocol.parseLong(array , payload , comma - payload) ,
+                            TextProtocol.parseLong(array , comma + 1 , payload + payloadLength - comma - 1));
+                    break;
+                case BinaryProtocol.QUIZ:
+                    quiz(tag(array , payload , payloadLength));
+                    break;
+                case BinaryProtocol.ANSWER_QUIZ:
+                    answerQuestion(array , payload , payloadLength);
+                    break;
+                case BinaryProtocol.NEXT_QUIZ:
+                    nextQuiz();
+                    break;
+                case BinaryProtocol.QUIT:
+                    quit();
+                    break;
+                case BinaryProtocol.JOIN_ROOM:
+                    joinRoom(new String(array , payload , payloadLength , StandardCharsets.UTF_8));
+                    break;
+                case BinaryProtocol.LEADERBOARD:
+                    leaderboard(TextProtocol.parseDecimal(array , payload , payloadLength));
+                    break;
+                case BinaryProtocol.PREFETCH:
+                    prefetch(TextProtocol.parseDecimal(array , payload , payloadLength));
+                    break;
+            }
+
+        } catch (Exception e) {
+            // If there's an error while processing the message, send an error message to the client
+            failed = true;
+            sendError(String.format("Error message handing: %s" , e.getMessage()));
+            Log.warn("Fail to handle message from client %d: %s" , clientId , e.getMessage());
+        } finally {
+            dispatched(opcode , start , traced , length , failed);
+        }
+
+    }
+
+    // Method to handle incoming binary frames from the client and process them
+    void binaryMessageHandler(byte[] array , int offset , int length) {
+        lastReadTick = idleTimer.currentTick();
+        if (!admitMessage()) return;
+        // Time one message in DISPATCH_SAMPLE, a clock read costs as much as handling a small message
+        long start = (++dispatchCount & (DISPATCH_SAMPLE - 1)) == 0 ? System.nanoTime() : 0;
+        DispatchEvent traced = startTrace();
+        byte opcode = TextProtocol.UNKNOWN;
+        boolean failed = false;
+
+        try {
+            BinaryProtocol.Reader frame = frameReader.reset(array , offset , length);
+            opcode = frame.readByte();
+
+            // If the participant is not registered yet, prevent handling other events
+            checkRegistered(opcode == BinaryProtocol.REGISTER || opcode == BinaryProtocol.RESUME || isHeartbeat(opcode));
+
+            // Handle the event based on its opcode
+            switch (opcode) {
+                case BinaryProtocol.REGISTER:
+                    register(frame.readString() , frame.readString() , frame.readString());
+                    break;
+                case BinaryProtocol.PING:
+                    connection.write(PONG_FRAME);
+                    break;
+                case BinaryProtocol.PONG:
+                    // The client is alive, receiving it was enough
+                    break;
+                case BinaryProtocol.RESUME:
+                    resume(frame.readVarint() , frame.readVarint());
+                    break;
+                case BinaryProtocol.QUIZ:
+                    quiz(frame.hasRemaining() ? frame.readString() : null);
+                    break;
+                case BinaryProtocol.ANSWER_QUIZ:
+                    int answerLength = frame.readFieldLength();
+                    answerQuestion(array , frame.position() , answerLength);
+                    frame.skip(answerLength);
+                    break;
+                case BinaryProtocol.NEXT_QUIZ:
+                    nextQuiz();
+                    break;
+                case BinaryProtocol.QUIT:
+                    quit();
+                    break;
+                case BinaryProtocol.JOIN_ROOM:
+                    joinRoom(frame.readString());
+                    break;
+                case BinaryProtocol.LEADERBOARD:
+                    leaderboard((int) Math.min(frame.readVarint() , MAX_LEADERBOARD));
+                    break;
+                case BinaryProtocol.PREFETCH:
+                    prefetch((int) Math.min(frame.readVarint() , MAX_PREFETCH));
+                    break;
+                default:
+                    throw new Exception("Unknown opcode: " + opcode);
+            }
+
+        } catch (Exception e) {
+            // If there's an error while processing the frame, send an error frame to the client
+            failed = true;
+            sendError(String.format("Error message handing: %s" , e.getMessage()));
+            Log.warn("Fail to handle frame from client %d: %s" , clientId , e.getMessage());
+        } finally {
+            dispatched(opcode , start , traced , length , failed);
+        }
+    }
+
+    // Method to apply the session's rate limit to the message about to be handled.
+    // The clock is the time the message was read, so the check costs no clock read of its own.
+    private boolean admitMessage() {
+        if (inbound == null) return true;
+        if (inbound.tryTake(connection.receivedAt())) {
+            throttled = false;
+            return true;
+        }
+        // Drop the message, and tell the client once per run of dropped messages
+        Metrics.rateLimited();
+        if (!throttled) {
+            throttled = true;
+            sendError("Too many messages, slow down");
+        }
+        return false;
+    }
+
+    // Method to start a JFR event for the message about to be handled, or null when JFR events are off
+    private static DispatchEvent startTrace() {
+        if (!Metrics.isJfrEnabled()) return null;
+        DispatchEvent traced = new DispatchEvent();
+        traced.begin();
+        return traced;
+    }
+
+    // Method to record a handled message in the metrics and, when it is traced, in JFR; start is 0 when it is not timed
+    private void dispatched(byte opcode , long start , DispatchEvent traced , int length , boolean failed) {
+        Metrics.dispatched(opcode);
+        if (start != 0) Metrics.dispatchTime(opcode , System.nanoTime() - start);
+        if (failed) Metrics.error();
+        if (traced != null) {
+            traced.end();
+            if (traced.shouldCommit()) {
+                traced.clientId = clientId;
+                traced.event = TextProtocol.eventName(opcode);
+                traced.length = length;
+                traced.error = failed;
+                traced.commit();
+            }
+        }
+    }
+
+    private static boolean isHeartbeat(byte opcode) {
+        return opcode == BinaryProtocol.PING || opcode == BinaryProtocol.PONG;
+    }
+
+    // Method to schedule the next look at the session's read deadline
+    private void scheduleIdleCheck() {
+        long ping = pingTicks;
+        long idle = idleTicks;
+        long lastRead = lastReadTick;
+        long silent = idleTimer.currentTick() - lastRead;
+        long wait = Long.MAX_VALUE;
+        // Activity is only known to the tick, so a deadline passes one tick after it is reached
+        if (ping > 0 && pingedTick <= lastRead) wait = ping - silent + 1;
+        if (idle > 0) wait = Math.min(wait , idle - silent + 1);
+        if (wait == Long.MAX_VALUE) return; // Heartbeats are off
+        idleTimer.schedule(checkIdle , Math.max(1 , wait) , TimeUnit.SECONDS);
+    }
+
+    // Method run by the idle timer: PING a silent client, evict one that stayed silent, or check again later.
+    // Messages only record their tick, so a busy session costs one check per interval and no timer updates.
+    private void checkIdle() {
+        if (!connection.isOpen()) return;
+        long lastRead = lastReadTick;
+        long now = idleTimer.currentTick();
+        long silent = now - lastRead;
+
+        if (idleTicks > 0 && silent > idleTicks) {
+            connection.execute(evict);
+            return;
+        }
+        // One PING per silence, a message from the client arms the next one
+        if (pingTicks > 0 && silent > pingTicks && pingedTick <= lastRead) {
+            pingedTick = now;
+            connection.execute(sendPing);
+        }
+        scheduleIdleCheck();
+    }
+
+    // Method to ask a silent client to show it is still there
+    private void sendPing() {
+        connection.write(connection.isBinary() ? PING_FRAME : PING_LINE);
+    }
+
+    // Method to drop a client that stopped answering; a registered player can still RESUME
+    private void evict() {
+        Log.debug("Evicting idle client %d" , clientId);
+        try {
+            connection.close();
+        } catch (IOException e) {
+            Log.warn("Fail to close idle client %d: %s" , clientId , e.getMessage());
+        }
+    }
+
+    // Method to reject every event but REGISTER until the participant is registered
+    private void checkRegistered(boolean isRegister) throws Exception {
+        if (!isRegister && participant == null) {
+            throw new Exception("Please register");
+        }
+    }
+
+    // Method to handle the client's request to join a room
+    private void joinRoom(String name) throws Exception {
+        if (room != null || remoteRoom != null) {
+            throw new Exception("Already in a room");
+        }
+        if (Cluster.isRemote(name)) {
+            // Another node of the cluster owns the room, it plays this participant through a stand-in
+            remoteRoom = Cluster.joinRemote(name , this);
+        } else {
+            room = Room.join(name , this);
+        }
+
+        // Confirm with the room name, questions will follow once the room starts
+        if (connection.isBinary()) {
+            connection.write(BinaryProtocol.frame(BinaryProtocol.JOIN_ROOM , name));
+        } else {
+            sendMessage("JOIN_ROOM" , name);
+        }
+    }
+
+    // Method called by a room when the participant leaves it, e.g. at the end of the game
+    void leaveRoom(Room left , String message) {
+        if (room != left) return;
+        room = null;
+        if (connection instanceof ProxyConnection) {
+            // A stand-in: the player's home node ends its side of the room and tells the player
+            ((ProxyConnection) connection).left(message);
+            return;
+        }
+        sendError(message);
+    }
+
+    // Method called when the room of another node the participant plays in is over for it
+    void leaveRemoteRoom(String message) {
+        Cluster.RemoteRoom left = remoteRoom;
+        if (left == null) return;
+        remoteRoom = null;
+        left.remove(this);
+        sendError(message);
+    }
+
+    // Method to put a stand-in in a room of this node
+    void joinForwardedRoom(String name) {
+        room = Room.join(name , this);
+    }
+
+    // Method to take a stand-in out of its room without telling the home node, which asked for it or is gone
+    void leaveForwardedRoom() {
+        Room current = room;
+        room = null;
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+        }
+        if (current != null) current.leave(this);
+    }
+
+    // Method to handle an answer a stand-in's home node forwarded, timed there from the arrival of the question
+    void answerForwarded(long answerNanos , long receivedAt , byte[] array , int offset , int length) {
+        try {
+            Room current = room;
+            if (current == null) {
+                throw new Exception("Not in a room");
+            }
+            current.answer(this , answerNanos , receivedAt , array , offset , length);
+        } catch (Exception e) {
+            sendError(String.format("Error message handing: %s" , e.getMessage()));
+            Log.warn("Fail to handle message from client %d: %s" , clientId , e.getMessage());
+        }
+    }
+
+    // Method to record the participant's answer to a room round, returning false if it already answered
+    boolean recordRoomAnswer(int round , boolean correct , long answerNanos) {
+        if (roomAnswerRound == round) return false;
+        roomAnswerCorrect = correct;
+        roomAnswerNanos = answerNanos;
+        roomAnswerRound = round;
+        return true;
+    }
+
+    // Method to get how long the participant took to answer a room round, or 0 if it did not answer
+    long roomAnswerNanos(int round) {
+        return roomAnswerRound == round ? roomAnswerNanos : 0;
+    }
+
+    // Method to check if the participant answered a room round correctly
+    boolean isRoomAnswerCorrect(int round) {
+        return roomAnswerRound == round && roomAnswerCorrect;
+    }
+
+    // Method to give the participant points for a correct answer and move it on the leaderboard
+    void addPoints(int points) {
+        participant.setPoints(participant.Points + points);
+        if (connection instanceof ProxyConnection) {
+            // A stand-in: the player's home node keeps its score, leaderboard entry and journal
+            ((ProxyConnection) connection).points(points);
+            return;
+        }
+        Leaderboard.global().update(clientId , participant.Points);
+        Cluster.scoreChanged(clientId , participant.name() + " " + participant.surname() , participant.Points);
+        Journal journal = Journal.current();
+        if (journal != null) journal.score(clientId , participant.Points);
+    }
+
+    // Method to push the participant's rank if it changed since the last push.
+    // The RANK message is encoded into the given buffer, owned by the calling thread.
+    void pushRank(byte[] buffer) {
+        if (connection instanceof ProxyConnection) {
+            // Ranks come from the home node, which has the latest score of the player
+            ((ProxyConnection) connection).pushRank();
+            return;
+        }
+        Leaderboard leaderboard = Leaderboard.global();
+        int rank = leaderboard.rank(clientId);
+        if (rank == 0 || rank == lastRank) return;
+        lastRank = rank;
+
+        if (Log.isTraceEnabled()) Log.trace("Sending rank: Client: %s , Rank: %d" , clientId , rank);
+        int length = connection.isBinary()
+                ? BinaryProtocol.writeRank(buffer , rank , leaderboard.size())
+                : TextProtocol.writeRank(buffer , rank , leaderboard.size());
+        connection.write(buffer , 0 , length);
+    }
+
+    // Method to handle the client's request for the best k players
+    private void leaderboard(int k) {
+        List<Leaderboard.Ranked> top = Leaderboard.global().top(Math.min(Math.max(k , 1) , MAX_LEADERBOARD));
+        if (connection.isBinary()) {
+            connection.write(BinaryProtocol.leaderboard(top));
+            return;
+        }
+
+        // One "rank,name,points" line per player
+        StringBuilder message = new StringBuilder();
+        for (Leaderboard.Ranked entry : top) {
+            if (message.length() > 0) message.append('\n');
+            message.append(entry.rank).append(',').append(entry.name).append(',').append(entry.score);
+        }
+        sendMessage("LEADERBOARD" , message.toString());
+    }
+
+    // Method to get the client ID of this session
+    long clientId() {
+        return clientId;
+    }
+
+    // Method to get the transport of this session
+    Connection connection() {
+        return connection;
+    }
+
+    // Method to get the participant of this session, or null before REGISTER
+    Participant participant() {
+        return participant;
+    }
+
+    // Method to handle the client's request to continue a session that lost its connection
+    private void resume(long id , long resumeToken) throws Exception {
+        if (participant != null) {
+            throw new Exception("Already registered");
+        }
+        SessionCache.Parked state = parked.take(id , resumeToken);
+        if (state == null) {
+            throw new Exception("Session expired, please register");
+        }
+
+        // Take over the parked session's ID and state
+        clients.remove(clientId , this);
+        clientId = state.clientId;
+        token = state.token;
+        participant = state.participant;
+        catalog = state.catalog;
+        sampler = state.sampler;
+        System.arraycopy(state.questions , 0 , drawn , 0 , state.questions.length);
+        drawnHead = 0;
+        drawnCount = state.questions.length;
+        correctAnswer = state.correctAnswer;
+        clients.attach(clientId , this);
+        Leaderboard.global().add(clientId , participant.name() + " " + participant.surname() , participant.Points);
+        Cluster.scoreChanged(clientId , participant.name() + " " + participant.surname() , participant.Points);
+        lastRank = 0;
+
+        if (connection.isBinary()) {
+            connection.write(BinaryProtocol.frame(BinaryProtocol.RESUME , clientId , participant.Points));
+        } else {
+            sendMessage("RESUME" , clientId + "," + participant.Points);
+        }
+        // The client carries on with NEXT_QUIZ, which picks up the question the session was on
+    }
+
+    // Method to handle the client's request to quit and close the connection
+    private void quit() {
+        quitting = true;
+        Room current = room;
+        if (current != null) current.leave(this);
+        Cluster.RemoteRoom remote = remoteRoom;
+        if (remote != null) {
+            remoteRoom = null;
+            remote.leave(this);
+        }
+        if (connection.isBinary()) {
+            connection.write(BinaryProtocol.frame(BinaryProtocol.QUIT));
+        } else {
+            sendMessage("QUIT" , "Close connection");
+        }
+        try {
+            connection.close();
+            // Remove this client from the map of connected clients and from the leaderboard
+            clients.remove(clientId , this);
+            Leaderboard.global().remove(clientId);
+            Cluster.playerLeft(clientId);
+        } catch (IOException e) {
+            // If there's an error while closing the socket, throw a RuntimeException
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Method to handle the client's request for the next quiz
+    private void nextQuiz() throws Exception {
+        checkNotInRoom();
+        if (prefetch > 0) {
+            // The quiz already moved on with the answers, send the questions held ahead again, e.g. after RESUME
+            if (drawnCount == 0 && sampler().remaining() == 0) {
+                throw new Exception("Game ended");
+            }
+            for (int i = 0; i < drawnCount; i++) {
+                writeQuiz(drawn[(drawnHead + i) & (MAX_PREFETCH - 1)]);
+            }
+            sendAhead();
+            quizSentAt = System.nanoTime();
+            return;
+        }
+        // If the participant answered correctly, proceed to the next quiz
+        if (correctAnswer && drawnCount > 0) dropQuiz();
+        correctAnswer = false;
+        if (drawnCount == 0 && !draw()) {
+            throw new Exception("Game ended");
+        }
+        // Send the next quiz question to the client
+        sendQuiz();
+    }
+
+    // Method to handle the client's request to hold n questions ahead of its answers, 0 to go back to one per request.
+    // In pipelined mode every question is answered once and the quiz moves on, as in a room, so the reply to an
+    // answer can carry the next question without waiting for another request, and a client holding questions
+    // ahead answers them back to back. The answers are still only checked here.
+    private void prefetch(int n) {
+        // Switching on, a question answered correctly is done with, as NEXT_QUIZ would have moved on from it
+        if (prefetch == 0 && correctAnswer && drawnCount > 0) {
+            dropQuiz();
+            correctAnswer = false;
+        }
+        prefetch = Math.min(n , MAX_PREFETCH);
+        if (connection.isBinary()) {
+            connection.write(BinaryProtocol.frame(BinaryProtocol.PREFETCH , prefetch));
+        } else {
+            sendMessage("PREFETCH" , String.valueOf(prefetch));
+        }
+    }
+
+    // Method to draw and send questions until prefetch of them are with the client, or the bank runs out
+    private void sendAhead() {
+        while (drawnCount < prefetch && draw()) {
+            writeQuiz(drawn[(drawnHead + drawnCount - 1) & (MAX_PREFETCH - 1)]);
+        }
+    }
+
+    // Method to move a pipelined quiz on after an answer, received at answeredAt, and top up the questions sent ahead
+    private void advance(long answeredAt) {
+        dropQuiz();
+        correctAnswer = false; // Already moved on, a later NEXT_QUIZ must not skip a question
+        // A question the client already holds can be shown as soon as it answered the previous one
+        boolean held = drawnCount > 0;
+        sendAhead();
+        if (drawnCount == 0) {
+            sendError("Game ended");
+            return;
+        }
+        quizSentAt = held ? answeredAt : System.nanoTime();
+    }
+
+    // Method to handle the client's response to a quiz question, read straight from the received bytes
+    private void answerQuestion(byte[] array , int offset , int length) throws Exception {
+        Room current = room;
+        if (current != null) {
+            // In a room the answer belongs to the round the room is asking
+            current.answer(this , array , offset , length);
+            return;
+        }
+        Cluster.RemoteRoom remote = remoteRoom;
+        if (remote != null) {
+            // The room's node checks and scores the answer
+            remote.answer(this , array , offset , length);
+            return;
+        }
+
+        try {
+            // Check if the quiz has ended
+            if (drawnCount == 0 && sampler != null && sampler.remaining() == 0) {
+                throw new Exception("Game ended");
+            }
+            // Each question sent can be answered once
+            if (quizSentAt == 0) {
+                throw new Exception("No open question");
+            }
+            int question = drawn[drawnHead];
+            // Time the answer from sending the question to reading the answer off the socket,
+            // and separately how long the answer then waited inside the server
+            long receivedAt = connection.receivedAt();
+            long answerNanos = receivedAt - quizSentAt;
+            quizSentAt = 0;
+            catalog.recordAnswerTime(question , answerNanos);
+            Metrics.answerTimed(answerNanos , System.nanoTime() - receivedAt);
+
+            // Check if the participant's answer is correct against the compiled answer key
+            correctAnswer = catalog.isCorrect(question , array , offset , length);
+
+            // If the answer is correct, update the participant's points, times the question's weight, and leaderboard position
+            if (correctAnswer) addPoints(Scoring.points(answerNanos) * catalog.weight(question));
+            // Send the result to the client, followed by its new rank if it moved
+            sendResult(correctAnswer , participant.Points , answerNanos);
+            pushRank(out);
+            // In pipelined mode the same reply carries the next question
+            if (prefetch > 0) advance(receivedAt);
+        } catch (Exception e) {
+            Log.warn("Fail to answer for client %d: %s" , clientId , e.getMessage());
+            // Answer anyway, the client waits for a reply to its answer
+            sendError(e.getMessage());
+        }
+    }
+
+    // Method to handle the client's request to start the quiz, with the questions of a tag or, if null, of the whole bank
+    private void quiz(String tag) throws Exception {
+        checkNotInRoom();
+        // Pick up the latest question bank, start drawing its questions over and send the first one to the client
+        QuizCatalog latest = QuizCatalog.current();
+        QuestionSampler questions = latest.sampler(tag);
+        if (questions == null) {
+            throw new Exception("Unknown tag: " + tag);
+        }
+        catalog = latest;
+        sampler = questions;
+        drawnCount = 0;
+        correctAnswer = false;
+        if (prefetch > 0) {
+            sendAhead();
+            quizSentAt = System.nanoTime();
+            return;
+        }
+        draw();
+        sendQuiz();
+    }
+
+    // Static method to read the tag of a QUIZ message, null when it names none ("true" or nothing)
+    private static String tag(byte[] array , int offset , int length) {
+        if (length == 0 || (length == 4 && array[offset] == 't' && array[offset + 1] == 'r'
+                && array[offset + 2] == 'u' && array[offset + 3] == 'e')) {
+            return null;
+        }
+        return new String(array , offset , length , StandardCharsets.UTF_8);
+    }
+
+    // Method to reject quiz requests while the room pushes the questions
+    private void checkNotInRoom() throws Exception {
+        if (room != null || remoteRoom != null) {
+            throw new Exception("Questions are sent by the room");
+        }
+    }
+
+    // Method to get the question bank of this participant, starting from the current one
+    private QuizCatalog catalog() {
+        if (catalog == null) catalog = QuizCatalog.current();
+        return catalog;
+    }
+
+    // Method to get the sampler of this participant's questions, drawing from the whole bank if no quiz was started
+    private QuestionSampler sampler() {
+        if (sampler == null) sampler = catalog().sampler(null);
+        return sampler;
+    }
+
+    // Method to draw the participant's next question into the ones it holds, returning false once none is left
+    private boolean draw() {
+        int question = sampler().next();
+        if (question < 0) return false;
+        drawn[(drawnHead + drawnCount++) & (MAX_PREFETCH - 1)] = question;
+        return true;
+    }
+
+    // Method to be done with the question the participant is attempting
+    private void dropQuiz() {
+        drawnHead = (drawnHead + 1) & (MAX_PREFETCH - 1);
+        drawnCount--;
+    }
+
+    // Method to get the questions drawn and not done with, the current one first
+    private int[] drawnQuestions() {
+        int[] questions = new int[drawnCount];
+        for (int i = 0; i < drawnCount; i++) {
+            questions[i] = drawn[(drawnHead + i) & (MAX_PREFETCH - 1)];
+        }
+        return questions;
+    }
+
+    // Method to send the current quiz question using its pre-encoded line
+    private void sendQuiz() {
+        writeQuiz(drawn[drawnHead]);
+        quizSentAt = System.nanoTime();
+    }
+
+    // Method to write a quiz question using its pre-encoded line
+    private void writeQuiz(int number) {
+        if (Log.isTraceEnabled()) Log.trace("Sending quiz: Client: %s , Quiz: %d" , clientId , number);
+        catalog().writeQuiz(connection , number);
+    }
+
+    // Method to send the result of an answer to the client
+    // The reply is encoded into the session's reusable buffer
+    private void sendResult(boolean correct , int points , long answerNanos) {
+        long answerMillis = TimeUnit.NANOSECONDS.toMillis(Math.max(answerNanos , 0));
+        if (Log.isTraceEnabled()) Log.trace("Sending result: Client: %s , Correct: %s , Points: %d , Time: %d ms" , clientId , correct , points , answerMillis);
+        int length = connection.isBinary()
+                ? BinaryProtocol.writeResultAnswer(out , correct , points , answerMillis)
+                : TextProtocol.writeResultAnswer(out , correct , points);
+        connection.write(out , 0 , length);
+    }
+
+    // Method to send an error to the client
+    private void sendError(String message) {
+        if (connection.isBinary()) {
+            connection.write(BinaryProtocol.frame(BinaryProtocol.ERROR , message));
+            return;
+        }
+        sendMessage("ERROR" , message);
+    }
+
+    // Method to handle the client's registration request
+    private void register(String message) {
+        try {
+            // Split the registration message into name, surname, and age using the "," separator
+            final String[] split = message.split(",");
+            if (split.length != 3) {
+                throw new Exception("Invalid register info");
+            }
+
+            // Extract name, surname, and age from the split parts
+            register(split[0] , split[1] , split[2]);
+        } catch (Exception e) {
+            Log.warn("Fail to register client %d: %s" , clientId , e.getMessage());
+        }
+    }
+
+    // Method to register the participant with the provided details
+    private void register(String name , String surname , String age) {
+        // Store the registration first, so a rejected one leaves no participant behind
+        long newToken = tokens.nextLong() & Long.MAX_VALUE;
+        Journal journal = Journal.current();
+        if (journal != null) journal.register(clientId , newToken , name , surname , age);
+
+        // Create a new participant instance with the provided details
+        participant = new Participant(name , surname , age);
+        token = newToken;
+        Leaderboard.global().add(clientId , name + " " + surname , 0);
+        Cluster.scoreChanged(clientId , name + " " + surname , 0);
+        lastRank = 0;
+
+        // Send the client's unique ID as the registration confirmation
+        if (connection.isBinary()) {
+            connection.write(BinaryProtocol.frame(BinaryProtocol.REGISTER , clientId , token));
+        } else {
+            if (Log.isTraceEnabled()) Log.trace("Sending message: Client: %s , Message: %s" , clientId , clientId);
+            connection.write(out , 0 , TextProtocol.writeRegister(out , clientId , token));
+        }
+    }
+
+    // Method to send a message to the client
+    private void sendMessage(String eventName , String message) {
+        if (Log.isTraceEnabled()) Log.trace("Sending message: Client: %s , Message: %s" , clientId , message);
+        // Replace newline characters in the message with a special identifier to preserve formatting
+        connection.write(String.format("%s;;%s" , eventName , message.replace("\n" , ";n;")));
+    }
+}
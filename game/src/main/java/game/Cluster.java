@@ -0,0 +1,460 @@
+package game;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Clustering of several Server nodes, on one host or a LAN, with no broker in between.
+// Rooms are partitioned by consistent hashing of their names, and every node knows every other one.
+// Players stay on the node they connected to (their home node); joining a room owned by another node makes the
+// owner play them through a stand-in session (see ProxyConnection), so clients never notice. The owner forwards
+// each room question once per node, which fans it out to its own players, and the home node forwards answers
+// with the answer time measured locally, so the hop between nodes does not count against the player.
+// Every node keeps a full leaderboard: the home node of a player sends its score changes to the other nodes.
+// Client IDs carry the index of their home node in their high bits, so they are unique across the cluster.
+//
+// Nodes talk over one TCP connection per direction, in frames like the binary client protocol
+// (varint length | opcode | fields), batched per tick so a busy room costs one write per node per tick.
+//
+//   HELLO      node index, cluster secret                        first message on a connection
+//   SCORE      client id, score, name                            player's leaderboard entry, coalesced per tick
+//   GONE       client id                                         player left the board
+//   JOIN       client id, binary flag, points, name, surname, age, room      home to room owner
+//   ANSWER     client id, answer time in ns, answer                           home to room owner
+//   LEAVE      client id                                                      home to room owner
+//   DELIVER    client id, encoded message                                     room owner to home
+//   QUESTION   room, encoded line, encoded frame                              room owner to home
+//   POINTS     client id, points won                                          room owner to home
+//   RANK       client id                                                      room owner to home
+//   LEFT       client id, message                                             room owner to home
+//
+// Every node is given the same cluster secret, and a connection whose HELLO does not carry it is closed before
+// any other message is read, so a client reaching the peer port cannot post scores or points. The secret
+// travels in plaintext, like the rest of the peer traffic, so it only protects a trusted network.
+//
+// A node that goes down takes its rooms and its players with it: the others drop its players from their boards
+// and end its rooms for their players, and rooms hashed to it are unavailable until it is back.
+public final class Cluster {
+
+    static final byte HELLO = 1;
+    static final byte SCORE = 2;
+    static final byte GONE = 3;
+    static final byte JOIN = 4;
+    static final byte ANSWER = 5;
+    static final byte LEAVE = 6;
+    static final byte DELIVER = 7;
+    static final byte QUESTION = 8;
+    static final byte POINTS = 9;
+    static final byte RANK = 10;
+    static final byte LEFT = 11;
+
+    private static final int NODE_SHIFT = 40; // Client IDs are the home node index above this bit
+
+    // One node of the cluster, as given on the command line: host:clientPort:peerPort
+    public static final class Node {
+        public final String host; // Host name or address of the node
+        public final int port; // Port clients connect to
+        public final int peerPort; // Port the other nodes connect to
+
+        Node(String host , int port , int peerPort) {
+            this.host = host;
+            this.port = port;
+            this.peerPort = peerPort;
+        }
+
+        // Static method to parse host:clientPort:peerPort
+        public static Node parse(String address) {
+            String[] parts = address.split(":");
+            if (parts.length != 3) throw new IllegalArgumentException("Expected host:port:peerPort, got " + address);
+            return new Node(parts[0] , Integer.parseInt(parts[1]) , Integer.parseInt(parts[2]));
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port + ":" + peerPort;
+        }
+    }
+
+    // Players of this node in a room owned by another node
+    static final class RemoteRoom {
+        private final String name; // Name of the room
+        private final ClusterPeer owner; // Link to the node that owns the room
+        private final CopyOnWriteArrayList<ClientManager> members = new CopyOnWriteArrayList<>(); // Players of this node
+        private volatile long askedAt; // System.nanoTime() when the open question arrived, 0 before the first one
+
+        RemoteRoom(String name , ClusterPeer owner) {
+            this.name = name;
+            this.owner = owner;
+        }
+
+        // Method to get the name of the room
+        String name() {
+            return name;
+        }
+
+        // Method to forward a member's answer, timed from the arrival of the question on this node
+        void answer(ClientManager session , byte[] array , int offset , int length) throws Exception {
+            long asked = askedAt;
+            if (asked == 0) {
+                throw new Exception("No open question");
+            }
+            owner.answer(session.clientId() , session.connection().receivedAt() - asked , array , offset , length);
+        }
+
+        // Method to take a member out of the room and tell the owner, e.g. when it quits
+        void leave(ClientManager session) {
+            remove(session);
+            owner.leave(session.clientId());
+        }
+
+        // Method to forget a member, closing the room on this node once it has none
+        void remove(ClientManager session) {
+            members.remove(session);
+            remoteRooms.computeIfPresent(name , (key , room) -> room.members.isEmpty() ? null : room);
+        }
+    }
+
+    // Latest leaderboard entry of a player of this node
+    private static final class Player {
+        final String name; // Name shown on the board
+        final int score; // Current score
+
+        Player(String name , int score) {
+            this.name = name;
+            this.score = score;
+        }
+    }
+
+    private static volatile boolean enabled; // Whether this server is part of a cluster
+    private static Node[] nodes = new Node[0]; // Every node, in the same order on every node
+    private static int self; // Index of this node
+    private static String secret = ""; // Secret every node greets the others with
+    private static long tickNanos = TimeUnit.MILLISECONDS.toNanos(5); // Time between two batches
+    private static HashRing ring; // Room owners
+    private static ClusterPeer[] peers = new ClusterPeer[0]; // Outbound links by node index, null for this node
+
+    // Players of this node and the ones whose entry changed since the last tick
+    private static final ConcurrentHashMap<Long, Player> players = new ConcurrentHashMap<>();
+    private static final Map<Long, Boolean> dirty = new ConcurrentHashMap<>();
+
+    // Rooms of other nodes played by players of this node, by name
+    private static final ConcurrentHashMap<String, RemoteRoom> remoteRooms = new ConcurrentHashMap<>();
+
+    // Stand-in sessions of players of other nodes in rooms of this node, by client ID
+    private static final ConcurrentHashMap<Long, ClientManager> proxies = new ConcurrentHashMap<>();
+
+    private Cluster() {
+    }
+
+    // Static method to join a cluster of the given nodes as the node at index selfIndex, sharing clusterSecret with them
+    public static void configure(List<Node> clusterNodes , int selfIndex , String clusterSecret , long tickMillis) {
+        if (selfIndex < 0 || selfIndex >= clusterNodes.size()) {
+            throw new IllegalArgumentException("Node index " + selfIndex + " is not in the cluster of " + clusterNodes.size());
+        }
+        if (clusterSecret == null || clusterSecret.isEmpty()) {
+            throw new IllegalArgumentException("A cluster needs --cluster-secret= or the CLUSTER_SECRET environment variable");
+        }
+        secret = clusterSecret;
+        nodes = clusterNodes.toArray(new Node[0]);
+        self = selfIndex;
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1 , tickMillis));
+        ring = new HashRing(nodes.length);
+        peers = new ClusterPeer[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            if (i != self) peers[i] = new ClusterPeer(i , new InetSocketAddress(nodes[i].host , nodes[i].peerPort));
+        }
+        enabled = true;
+    }
+
+    // Static method to check if this server is part of a cluster
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Static method to get this node
+    public static Node self() {
+        return nodes[self];
+    }
+
+    // Static method to get the index of this node
+    static int selfNode() {
+        return self;
+    }
+
+    // Static method to get the secret this node greets the others with
+    static String secret() {
+        return secret;
+    }
+
+    // Static method to get the first client ID of this node; IDs of other nodes never fall in its range
+    public static long idBase() {
+        return (long) self << NODE_SHIFT;
+    }
+
+    // Static method to listen for the other nodes and start sending them batches
+    public static void start() throws IOException {
+        Node node = self();
+        ServerSocket listener = new ServerSocket();
+        listener.bind(new InetSocketAddress(InetAddress.getByName(node.host) , node.peerPort));
+        Thread acceptor = new Thread(() -> acceptPeers(listener) , "cluster-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        for (ClusterPeer peer : peers) {
+            if (peer != null) peer.start();
+        }
+        Thread ticker = new Thread(Cluster::tick , "cluster-tick");
+        ticker.setDaemon(true);
+        ticker.start();
+        Log.info("Cluster node %d of %d, peers connect on %s:%d" , self , nodes.length , node.host , node.peerPort);
+    }
+
+    // Static method to check if a room is owned by another node
+    static boolean isRemote(String room) {
+        return enabled && ring.owner(room) != self;
+    }
+
+    // Static method to put a player of this node in a room owned by another node
+    static RemoteRoom joinRemote(String name , ClientManager session) throws Exception {
+        ClusterPeer owner = peers[ring.owner(name)];
+        if (!owner.isConnected()) {
+            throw new Exception("Room unavailable, its node is down");
+        }
+        RemoteRoom room = remoteRooms.compute(name , (key , current) -> {
+            RemoteRoom joined = current != null ? current : new RemoteRoom(key , owner);
+            joined.members.add(session);
+            return joined;
+        });
+        owner.join(session.clientId() , session.connection().isBinary() , session.participant() , name);
+        return room;
+    }
+
+    // Static method to send a room question to every other node with players in the room, once per node
+    static void forwardQuestion(String room , Iterable<ClientManager> members , byte[] line , byte[] frame) {
+        if (!enabled) return;
+        boolean[] sent = new boolean[nodes.length];
+        for (ClientManager member : members) {
+            Connection connection = member.connection();
+            if (!(connection instanceof ProxyConnection)) continue;
+            ClusterPeer home = ((ProxyConnection) connection).home();
+            if (sent[home.node()]) continue;
+            sent[home.node()] = true;
+            home.question(room , line , frame);
+        }
+    }
+
+    // Static method to publish a player's leaderboard entry to the other nodes at the next tick
+    static void scoreChanged(long clientId , String name , int score) {
+        if (!enabled) return;
+        players.put(clientId , new Player(name , score));
+        dirty.put(clientId , Boolean.TRUE);
+    }
+
+    // Static method to take a player off the leaderboards of the other nodes at the next tick
+    static void playerLeft(long clientId) {
+        if (!enabled) return;
+        players.remove(clientId);
+        dirty.put(clientId , Boolean.TRUE);
+    }
+
+    // Static method to queue the entry of every player of this node, for a node that just (re)connected
+    static void snapshot(ClusterPeer peer) {
+        players.forEach((clientId , player) -> peer.score(clientId , player.score , player.name));
+    }
+
+    // Static method to forget the stand-in of a player that left a room of this node
+    static void dropProxy(long clientId) {
+        proxies.remove(clientId);
+    }
+
+    // Static method to clean up after a node went down: its players, its rooms and our players' rooms on it
+    static void nodeDown(int node) {
+        Leaderboard.global().removeIf(clientId -> (int) (clientId >>> NODE_SHIFT) == node);
+        proxies.forEach((clientId , proxy) -> {
+            if (((ProxyConnection) proxy.connection()).home().node() == node && proxies.remove(clientId , proxy)) {
+                proxy.leaveForwardedRoom();
+            }
+        });
+        remoteRooms.forEach((name , room) -> {
+            if (room.owner.node() != node) return;
+            for (ClientManager member : room.members) {
+                member.leaveRemoteRoom("Room closed, its node is unreachable");
+            }
+        });
+        // Reconnect from scratch, the node may have restarted without our players
+        ClusterPeer peer = peers[node];
+        if (peer != null && peer.isConnected()) peer.disconnect();
+    }
+
+    // Static method run by the tick thread: publish the leaderboard changes, then have every node's writer send its batch
+    private static void tick() {
+        List<Long> changed = new ArrayList<>();
+        while (true) {
+            LockSupport.parkNanos(tickNanos);
+            try {
+                // Every change since the last tick, coalesced to the latest entry of each player
+                changed.clear();
+                for (Long clientId : dirty.keySet()) {
+                    dirty.remove(clientId);
+                    changed.add(clientId);
+                }
+                for (ClusterPeer peer : peers) {
+                    if (peer == null) continue;
+                    for (Long clientId : changed) {
+                        Player player = players.get(clientId);
+                        if (player == null) {
+                            peer.gone(clientId);
+                        } else {
+                            peer.score(clientId , player.score , player.name);
+                        }
+                    }
+                    peer.flush();
+                }
+            } catch (RuntimeException e) {
+                Log.error(e , "Cluster tick failed");
+            }
+        }
+    }
+
+    private static void acceptPeers(ServerSocket listener) {
+        while (!listener.isClosed()) {
+            try {
+                Socket socket = listener.accept();
+                Thread reader = new Thread(() -> readPeer(socket) , "cluster-peer-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                Log.warn("Fail to accept a cluster node: %s" , e.getMessage());
+            }
+        }
+    }
+
+    // Static method to handle the messages of one node, until its connection closes
+    private static void readPeer(Socket socket) {
+        int node = -1;
+        try (socket) {
+            InputStream input = new BufferedInputStream(socket.getInputStream() , 64 * 1024);
+            BinaryProtocol.Reader frame = new BinaryProtocol.Reader();
+            byte[] out = new byte[64]; // Reused to encode rank pushes
+            byte[] body = BinaryProtocol.readFrame(input);
+            if (body == null) return;
+            frame.reset(body , 0 , body.length);
+            if (frame.readByte() != HELLO) throw new IOException("Expected HELLO");
+            int index = (int) frame.readVarint();
+            if (index < 0 || index >= nodes.length || index == self) throw new IOException("Unknown node " + index);
+            // In constant time, so the secret cannot be guessed a byte at a time; a stranger is not the node it claims
+            if (!MessageDigest.isEqual(frame.readString().getBytes(StandardCharsets.UTF_8) , secret.getBytes(StandardCharsets.UTF_8))) {
+                throw new IOException("Wrong cluster secret from " + socket.getRemoteSocketAddress());
+            }
+            node = index;
+            Log.info("Cluster node %d connected from %s" , node , socket.getRemoteSocketAddress());
+
+            while ((body = BinaryProtocol.readFrame(input)) != null) {
+                handle(node , frame.reset(body , 0 , body.length) , body , System.nanoTime() , out);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.warn("Cluster node %d link failed: %s" , node , e.getMessage());
+        }
+        if (node >= 0) {
+            Log.info("Cluster node %d disconnected" , node);
+            nodeDown(node);
+        }
+    }
+
+    // Static method to handle one message from a node
+    private static void handle(int node , BinaryProtocol.Reader frame , byte[] body , long receivedAt , byte[] out) {
+        byte opcode = frame.readByte();
+        long clientId;
+        ClientManager session;
+        int length;
+        switch (opcode) {
+            case SCORE:
+                clientId = frame.readVarint();
+                int score = (int) frame.readVarint();
+                Leaderboard.global().put(clientId , frame.readString() , score);
+                break;
+            case GONE:
+                Leaderboard.global().remove(frame.readVarint());
+                break;
+            case JOIN:
+                clientId = frame.readVarint();
+                boolean binary = frame.readVarint() != 0;
+                int points = (int) frame.readVarint();
+                Participant participant = new Participant(frame.readString() , frame.readString() , frame.readString());
+                participant.setPoints(points);
+                String room = frame.readString();
+                ProxyConnection connection = new ProxyConnection(peers[node] , clientId , binary);
+                if (ring.owner(room) != self) {
+                    // The nodes disagree on the cluster, e.g. a node started with another node list
+                    connection.left("Room not served by this node");
+                    break;
+                }
+                session = ClientManager.proxy(connection , clientId , participant);
+                ClientManager previous = proxies.put(clientId , session);
+                if (previous != null) previous.leaveForwardedRoom();
+                session.joinForwardedRoom(room);
+                break;
+            case ANSWER:
+                session = proxies.get(frame.readVarint());
+                long answerNanos = frame.readVarint();
+                length = frame.readFieldLength();
+                if (session != null) session.answerForwarded(answerNanos , receivedAt , body , frame.position() , length);
+                break;
+            case LEAVE:
+                session = proxies.remove(frame.readVarint());
+                if (session != null) session.leaveForwardedRoom();
+                break;
+            case DELIVER:
+                session = ClientManager.find(frame.readVarint());
+                length = frame.readFieldLength();
+                if (session != null) session.connection().write(body , frame.position() , length);
+                break;
+            case QUESTION:
+                RemoteRoom remote = remoteRooms.get(frame.readString());
+                int lineLength = frame.readFieldLength();
+                int line = frame.position();
+                frame.skip(lineLength);
+                int frameLength = frame.readFieldLength();
+                if (remote == null) break;
+                remote.askedAt = receivedAt;
+                for (ClientManager member : remote.members) {
+                    Connection memberConnection = member.connection();
+                    if (memberConnection.isBinary()) {
+                        memberConnection.write(body , frame.position() , frameLength);
+                    } else {
+                        memberConnection.write(body , line , lineLength);
+                    }
+                }
+                break;
+            case POINTS:
+                session = ClientManager.find(frame.readVarint());
+                int won = (int) frame.readVarint();
+                if (session != null) session.addPoints(won);
+                break;
+            case RANK:
+                session = ClientManager.find(frame.readVarint());
+                if (session != null) session.pushRank(out);
+                break;
+            case LEFT:
+                session = ClientManager.find(frame.readVarint());
+                String message = frame.readString();
+                if (session != null) session.leaveRemoteRoom(message);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown cluster opcode: " + opcode);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Outbound link to one other node of the cluster.
+// Messages are encoded straight into a batch buffer, and every cluster tick wakes the link's own writer thread,
+// which sends the whole batch with one write, so a busy room costs one syscall per node per tick whatever the
+// number of players. A node that stops reading or cannot be reached only holds up its own writer, never the tick
+// or the other links: a write blocked for WRITE_TIMEOUT_NANOS drops the link.
+// The link connects lazily and reconnects after a pause, greeting the node with HELLO and a snapshot of
+// this node's players each time. Messages queued while the link is down are dropped.
+final class ClusterPeer {
+
+    private static final int BATCH_SIZE = 16 * 1024; // Initial size of a batch buffer
+    private static final int MAX_BATCH_SIZE = 8 << 20; // Unsent bytes after which the node is treated as stuck
+    private static final int LENGTH_BYTES = 3; // Frame length prefix, padded to a fixed size so it can be filled in last
+    private static final int CONNECT_TIMEOUT_MILLIS = 1_000; // Bounded, so a node that went away is retried
+    private static final long RETRY_NANOS = 1_000_000_000L; // Pause between connection attempts
+    private static final long WRITE_TIMEOUT_NANOS = 5_000_000_000L; // A write blocked this long drops the link
+
+    private final int node; // Index of the node in the cluster
+    private final InetSocketAddress address; // Inter-node address of the node
+    private final Thread writer; // Connects to the node and sends it the batches
+
+    private byte[] batch = new byte[BATCH_SIZE]; // Messages for the next tick, guarded by this
+    private int batchLength; // Bytes in the batch
+    private byte[] spare = new byte[BATCH_SIZE]; // Second buffer, filled while the other one is being sent
+    private int frameStart; // Offset of the message being encoded
+
+    private volatile Socket socket; // Connection to the node, opened by the writer and closed by whoever drops the link
+    private OutputStream output; // Stream of the socket, only used by the writer
+    private long retryAt; // System.nanoTime() of the next connection attempt, only used by the writer
+    private volatile boolean connected; // Whether messages are being queued
+    private volatile long writingSince; // System.nanoTime() when the write in progress started, 0 when none is
+
+    ClusterPeer(int node , InetSocketAddress address) {
+        this.node = node;
+        this.address = address;
+        this.writer = new Thread(this::write , "cluster-writer-" + node);
+        this.writer.setDaemon(true);
+    }
+
+    // Method to start the writer, which connects on the first tick
+    void start() {
+        writer.start();
+    }
+
+    // Method to get the index of the node
+    int node() {
+        return node;
+    }
+
+    // Method to check if the link is up
+    boolean isConnected() {
+        return connected;
+    }
+
+    // Method called by the tick thread once the batch of this tick is encoded: wakes the writer up to send it,
+    // and drops the link when the writer has been stuck in one write for too long, as socket writes have no timeout
+    void flush() {
+        long since = writingSince;
+        if (since != 0 && System.nanoTime() - since > WRITE_TIMEOUT_NANOS) {
+            Log.warn("Cluster node %d has not read for %d ms, dropping its link" , node ,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - since));
+            closeSocket(); // The blocked write fails and the writer reconnects
+        }
+        LockSupport.unpark(writer);
+    }
+
+    // Writer loop: wait for a tick, then send the batch, or connect first when the link is down
+    private void write() {
+        while (true) {
+            LockSupport.park(this);
+            try {
+                if (connected) {
+                    send();
+                    continue;
+                }
+                if (socket != null) {
+                    // Dropped while encoding because the node stopped keeping up, see end()
+                    disconnect();
+                    Cluster.nodeDown(node);
+                }
+                connect();
+            } catch (RuntimeException e) {
+                Log.error(e , "Cluster writer of node %d failed" , node);
+            }
+        }
+    }
+
+    // Method to send the batch of this tick
+    private void send() {
+        byte[] pending;
+        int length;
+        synchronized (this) {
+            if (batchLength == 0) return;
+            pending = batch;
+            length = batchLength;
+            batch = spare != null ? spare : new byte[BATCH_SIZE];
+            batchLength = 0;
+            spare = null;
+        }
+        writingSince = System.nanoTime();
+        try {
+            output.write(pending , 0 , length);
+        } catch (IOException e) {
+            Log.warn("Lost cluster node %d: %s" , node , e.getMessage());
+            disconnect();
+            Cluster.nodeDown(node);
+        } finally {
+            writingSince = 0;
+            synchronized (this) {
+                spare = pending.length > BATCH_SIZE * 8 ? new byte[BATCH_SIZE] : pending;
+            }
+        }
+    }
+
+    private void connect() {
+        long now = System.nanoTime();
+        if (now - retryAt < 0) return;
+        retryAt = now + RETRY_NANOS;
+        Socket attempt = new Socket();
+        try {
+            attempt.setTcpNoDelay(true); // Batching is done per tick already
+            attempt.connect(address , CONNECT_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            Log.debug("Cluster node %d not reachable at %s: %s" , node , address , e.getMessage());
+            try {
+                attempt.close();
+            } catch (IOException ignored) {
+            }
+            return;
+        }
+        try {
+            output = attempt.getOutputStream();
+        } catch (IOException e) {
+            try {
+                attempt.close();
+            } catch (IOException ignored) {
+            }
+            return;
+        }
+        socket = attempt;
+        synchronized (this) {
+            batchLength = 0;
+            connected = true;
+            hello(Cluster.selfNode() , Cluster.secret());
+        }
+        // Whatever the node knew of our players is stale, e.g. after it restarted
+        Cluster.snapshot(this);
+        Log.info("Connected to cluster node %d at %s" , node , address);
+    }
+
+    // Method to drop the link, the writer retries it on a later tick
+    void disconnect() {
+        synchronized (this) {
+            connected = false;
+            batchLength = 0;
+        }
+        closeSocket();
+        socket = null;
+    }
+
+    // Method to close the socket, which fails a write blocked on it
+    private void closeSocket() {
+        Socket current = socket;
+        if (current == null) return;
+        try {
+            current.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Method to greet the node with the index of this node and the cluster secret
+    synchronized void hello(int self , String secret) {
+        if (!begin(Cluster.HELLO)) return;
+        varint(self);
+        string(secret);
+        end();
+    }
+
+    // Method to set a player's name and score on the node's leaderboard
+    synchronized void score(long clientId , int score , String name) {
+        if (!begin(Cluster.SCORE)) return;
+        varint(clientId);
+        varint(score);
+        string(name);
+        end();
+    }
+
+    // Method to take a player off the node's leaderboard
+    synchronized void gone(long clientId) {
+        if (!begin(Cluster.GONE)) return;
+        varint(clientId);
+        end();
+    }
+
+    // Method to put a player of this node in a room the node owns
+    synchronized void join(long clientId , boolean binary , Participant participant , String room) {
+        if (!begin(Cluster.JOIN)) return;
+        varint(clientId);
+        varint(binary ? 1 : 0);
+        varint(participant.Points);
+        string(participant.name());
+        string(participant.surname());
+        string(participant.age());
+        string(room);
+        end();
+    }
+
+    // Method to forward a player's answer to the room's node, with the answer time measured here
+    synchronized void answer(long clientId , long answerNanos , byte[] array , int offset , int length) {
+        if (!begin(Cluster.ANSWER)) return;
+        varint(clientId);
+        varint(Math.max(answerNanos , 0));
+        bytes(array , offset , length);
+        end();
+    }
+
+    // Method to take a player of this node out of its room on the node
+    synchronized void leave(long clientId) {
+        if (!begin(Cluster.LEAVE)) return;
+        varint(clientId);
+        end();
+    }
+
+    // Method to pass an encoded message to a player connected to the node
+    synchronized void deliver(long clientId , byte[] array , int offset , int length) {
+        if (!begin(Cluster.DELIVER)) return;
+        varint(clientId);
+        bytes(array , offset , length);
+        end();
+    }
+
+    // Method to send a room question once, for the node to fan out to its players in the room
+    synchronized void question(String room , byte[] line , byte[] frame) {
+        if (!begin(Cluster.QUESTION)) return;
+        string(room);
+        bytes(line , 0 , line.length);
+        bytes(frame , 0 , frame.length);
+        end();
+    }
+
+    // Method to give points won in a room to a player of the node
+    synchronized void points(long clientId , int points) {
+        if (!begin(Cluster.POINTS)) return;
+        varint(clientId);
+        varint(points);
+        end();
+    }
+
+    // Method to have the node push a player's rank, once a room round is scored
+    synchronized void rank(long clientId) {
+        if (!begin(Cluster.RANK)) return;
+        varint(clientId);
+        end();
+    }
+
+    // Method to tell the node its player is out of the room, with the message for the player
+    synchronized void left(long clientId , String message) {
+        if (!begin(Cluster.LEFT)) return;
+        varint(clientId);
+        string(message);
+        end();
+    }
+
+    // Method to start a message, returning false when the link is down and the message is dropped
+    private boolean begin(byte opcode) {
+        if (!connected) return false;
+        frameStart = batchLength;
+        reserve(LENGTH_BYTES + 1);
+        batchLength += LENGTH_BYTES;
+        batch[batchLength++] = opcode;
+        return true;
+    }
+
+    // Method to finish a message by filling in its length, as a varint padded to LENGTH_BYTES
+    private void end() {
+        int length = batchLength - frameStart - LENGTH_BYTES;
+        if (length > BinaryProtocol.MAX_FRAME_LENGTH) {
+            // Too long for the node to accept, drop it rather than the link
+            Log.warn("Dropping a %d byte message to cluster node %d" , length , node);
+            batchLength = frameStart;
+            return;
+        }
+        batch[frameStart] = (byte) ((length & 0x7F) | 0x80);
+        batch[frameStart + 1] = (byte) (((length >>> 7) & 0x7F) | 0x80);
+        batch[frameStart + 2] = (byte) (length >>> 14);
+        if (batchLength > MAX_BATCH_SIZE) {
+            // The writer has not been able to send for a long time, start over once the link is back
+            Log.warn("Cluster node %d is not keeping up, dropping its link" , node);
+            connected = false;
+            batchLength = 0;
+            closeSocket(); // Fails the write the writer is blocked in
+        }
+    }
+
+    private void varint(long value) {
+        reserve(10);
+        batchLength = BinaryProtocol.writeVarint(batch , batchLength , value);
+    }
+
+    private void bytes(byte[] array , int offset , int length) {
+        varint(length);
+        reserve(length);
+        System.arraycopy(array , offset , batch , batchLength , length);
+        batchLength += length;
+    }
+
+    private void string(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        bytes(bytes , 0 , bytes.length);
+    }
+
+    private void reserve(int length) {
+        if (batchLength + length <= batch.length) return;
+        byte[] grown = new byte[Math.max(batch.length * 2 , batchLength + length)];
+        System.arraycopy(batch , 0 , grown , 0 , batchLength);
+        batch = grown;
+    }
+}
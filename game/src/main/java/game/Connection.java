@@ -0,0 +1,36 @@
+package game;
+
+import java.io.IOException;
+
+// Transport used by a ClientManager session to talk to its client.
+// The blocking server uses SocketConnection, the NIO server uses NioConnection.
+public interface Connection {
+
+    // Check if the client negotiated the binary protocol instead of text lines
+    boolean isBinary();
+
+    // Write one protocol line (without the trailing newline) to the client
+    void write(String line);
+
+    // Write an already encoded line (including its trailing newline) or binary frame to the client.
+    // The array may be shared between sessions and must not be modified.
+    void write(byte[] line);
+
+    // Write part of a reusable buffer to the client.
+    // The bytes are copied if they cannot be sent right away, so the caller may reuse the array once this returns.
+    void write(byte[] array , int offset , int length);
+
+    // System.nanoTime() when the bytes of the message being handled were read from the socket,
+    // so time spent waiting behind other messages can be told apart from the client's own time
+    long receivedAt();
+
+    // Run a task where it may write to or close this connection without holding up other sessions:
+    // the connection's event loop, or a session thread for blocking sockets
+    void execute(Runnable task);
+
+    // Close the underlying socket or channel
+    void close() throws IOException;
+
+    // Check if the connection is still open
+    boolean isOpen();
+}
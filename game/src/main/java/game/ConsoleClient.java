@@ -0,0 +1,189 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Console front end of the Client.
+// The network reader prints what the server says and, when the client needs the player, queues a prompt.
+// A separate console thread takes the prompts off the queue, reads the player's input and calls the client,
+// so the reader never waits for the keyboard and neither thread runs while nothing happens.
+public class ConsoleClient implements Client.Listener {
+
+    private final BlockingQueue<Client.State> prompts = new LinkedBlockingQueue<>(); // States waiting for the player
+    private final BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+    private Client client; // The client driven by the console
+    private boolean inRoom; // Whether a room pushes the questions, only used by the reader thread
+
+
+    // Method to start the console thread, first registering or resuming the session ("clientId,token") if given
+    public void start(Client client , String resume) {
+        this.client = client;
+        if (resume == null || !client.resume(resume)) prompts.add(Client.State.REGISTERING);
+        Thread console = new Thread(this::run , "console");
+        // The reader thread keeps the process alive while connected, this one may sit in a console read
+        console.setDaemon(true);
+        console.start();
+    }
+
+    // Method run by the console thread: wait for a prompt, ask the player and act on the answer
+    private void run() {
+        try {
+            while (true) {
+                Client.State prompt = prompts.take();
+                if (prompt == Client.State.CLOSED) return;
+                // Only the latest prompt is still current, and only while the client is still in its state
+                if (!prompts.isEmpty() || client.state() != prompt) continue;
+                if (!ask(prompt)) {
+                    // The console was closed, nobody is left to play
+                    client.quit();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Method to ask the player what the state needs, returning false at the end of the console input
+    private boolean ask(Client.State prompt) {
+        switch (prompt) {
+            case REGISTERING:
+                // Get client's name, surname, and age from the console input
+                String name = getInput("Please enter name");
+                if (name == null) return false;
+                String surname = getInput("Please enter surname");
+                if (surname == null) return false;
+                String age = getInput("Please enter age");
+                if (age == null) return false;
+                client.register(name , surname , age);
+                return true;
+            case ANSWERING:
+                String answer = getInput("Please enter answer");
+                if (answer == null) return false;
+                if (!client.answer(answer)) System.out.println("The question is closed");
+                return true;
+            case MENU:
+                String number = getInput("1. Quiz\n2. QUIT\n3. Join room\n4. Leaderboard\nPlease enter number");
+                if (number == null) return false;
+                menu(number);
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    // Method to act on the player's choice in the menu
+    private void menu(String number) {
+        switch (number) {
+            case "1":
+                client.quiz();
+                break;
+            case "2":
+                // Send a quit message to the Server and close the connection
+                client.quit();
+                break;
+            case "3":
+                // Join a room, its questions are pushed to every member at the same time
+                String room = getInput("Please enter room name");
+                if (room != null) client.joinRoom(room);
+                break;
+            case "4":
+                // Ask for the best players on the server, the menu is shown again with them
+                client.leaderboard(10);
+                break;
+            default:
+                prompts.add(Client.State.MENU);
+        }
+    }
+
+    // Method to get user input from the console, or null at the end of the input
+    private String getInput(String message) {
+        System.out.print(message + ": ");
+        try {
+            return input.readLine();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public void stateChanged(Client.State state) {
+        // Hand the states that need the player over to the console thread
+        if (state == Client.State.MENU) inRoom = false;
+        if (state != Client.State.WAITING && state != Client.State.IN_ROOM) prompts.add(state);
+    }
+
+    @Override
+    public void registered(String clientId , String resumeToken) {
+        System.out.printf("Successfully register , Your client id: %s\n" , clientId);
+        showResumeHint(clientId , resumeToken);
+    }
+
+    @Override
+    public void resumed(String clientId , String points) {
+        System.out.printf("Session %s resumed , Points: %s\n" , clientId , points);
+    }
+
+    @Override
+    public void question(String quiz) {
+        System.out.println(quiz);
+    }
+
+    @Override
+    public void result(boolean correct , String points , String answerMillis) {
+        // Only the binary protocol reports the answer time
+        if (answerMillis == null) {
+            System.out.printf(correct ? "Bravo, Points: %s\n" : "Wrong answer, Points: %s\n" , points);
+        } else if (correct) {
+            System.out.printf("Bravo, answered in %s ms, Points: %s\n" , answerMillis , points);
+        } else {
+            System.out.printf("Wrong answer (%s ms), Points: %s\n" , answerMillis , points);
+        }
+        // The room sends the next question by itself
+        if (inRoom) System.out.println("Waiting for the next question...");
+    }
+
+    @Override
+    public void joinedRoom(String room) {
+        inRoom = true;
+        System.out.printf("Joined room %s, waiting for the first question...\n" , room);
+    }
+
+    @Override
+    public void leaderboard(List<Leaderboard.Ranked> top) {
+        System.out.println("Leaderboard:");
+        for (Leaderboard.Ranked entry : top) {
+            System.out.printf("%d. %s - %d points\n" , entry.rank , entry.name , entry.score);
+        }
+        if (client.state() == Client.State.MENU) prompts.add(Client.State.MENU);
+    }
+
+    @Override
+    public void rank(long rank , long players) {
+        System.out.printf("Your rank: %d of %d\n" , rank , players);
+    }
+
+    @Override
+    public void error(String message) {
+        System.out.printf("Server error: %s\n" , message);
+        // A refused menu choice leaves the client where it was, show the menu again
+        if (client.state() == Client.State.MENU) prompts.add(Client.State.MENU);
+    }
+
+    @Override
+    public void notice(String message) {
+        System.out.println(message);
+    }
+
+    // Method to tell the user how to get back into this session after a disconnect
+    private void showResumeHint(String clientId , String resumeToken) {
+        if (resumeToken != null) {
+            System.out.printf("If the connection drops, reconnect with: --resume=%s,%s\n" , clientId , resumeToken);
+        }
+    }
+}
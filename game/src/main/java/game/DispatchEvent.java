@@ -0,0 +1,33 @@
+package game;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR event for one client message handled by a session, for deep profiling.
+// Only created when the server runs with --jfr-events, and only recorded while a flight recording enables it,
+// e.g. java -XX:StartFlightRecording:filename=game.jfr ... or jcmd <pid> JFR.start
+@Name("game.Dispatch")
+@Label("Message Dispatch")
+@Category("Game")
+@Description("A client message handled by its session")
+@StackTrace(false)
+public class DispatchEvent extends Event {
+
+    @Label("Client ID")
+    long clientId;
+
+    @Label("Event")
+    String event;
+
+    @Label("Length")
+    @Description("Bytes of the message, without its framing")
+    int length;
+
+    @Label("Error")
+    @Description("Whether the message was answered with ERROR")
+    boolean error;
+}
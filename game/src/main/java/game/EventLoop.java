@@ -0,0 +1,207 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Single-threaded selector loop that owns a set of NioConnections.
+// All reads, message dispatch and writes for a connection happen on its loop thread.
+public class EventLoop implements Runnable {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024; // Size of the read buffer shared by all connections of this loop
+    private static final long ACCEPT_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1); // Pause after a failed accept
+
+    private final Selector selector; // Selector watching every channel owned by this loop
+    private final Thread thread; // The thread running this loop
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>(); // Tasks submitted from other threads
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE); // Reused for every read on this loop
+    private final ArrayList<NioConnection> pendingFlushes = new ArrayList<>(); // Connections with output staged this tick
+    private SelectionKey pausedAcceptor; // Acceptor paused after a failed accept, null when accepting
+    private long acceptResumeAt; // System.nanoTime() at which the paused acceptor accepts again
+
+    public EventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this , name);
+    }
+
+    // Method to start the loop thread
+    public void start() {
+        thread.start();
+    }
+
+    // Check if the caller is running on this loop's thread
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    // Method to have a connection flushed at the end of the current tick, only called on the loop thread
+    void flushLater(NioConnection connection) {
+        pendingFlushes.add(connection);
+    }
+
+    // Method to get the read buffer shared by the connections of this loop, only used on the loop thread
+    ByteBuffer readBuffer() {
+        return readBuffer;
+    }
+
+    // Method to run a task on the loop thread
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (!inEventLoop()) selector.wakeup();
+    }
+
+    // Method to close every channel owned by this loop and stop it
+    public void shutdown() {
+        execute(() -> {
+            for (SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException ignored) {
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                Log.error(e , "Fail to close the selector");
+            }
+        });
+    }
+
+    // Method to start accepting connections from a server channel on this loop
+    public void registerAcceptor(ServerSocketChannel serverChannel , Consumer<SocketChannel> onAccept) {
+        execute(() -> {
+            try {
+                serverChannel.register(selector , SelectionKey.OP_ACCEPT , onAccept);
+            } catch (IOException e) {
+                Log.error(e , "Fail to register the acceptor");
+            }
+        });
+    }
+
+    // Method to hand a freshly accepted channel over to this loop
+    public void register(SocketChannel channel) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                TcpOptions.apply(channel);
+                NioConnection connection = new NioConnection(this , channel);
+                connection.open(channel.register(selector , SelectionKey.OP_READ , connection));
+            } catch (IOException e) {
+                Log.error(e , "Fail to register a connection");
+                closeQuietly(channel);
+                Admission.release();
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        while (selector.isOpen()) {
+            try {
+                if (pausedAcceptor == null) {
+                    selector.select();
+                } else {
+                    // Wake up in time to accept again
+                    selector.select(Math.max(1 , TimeUnit.NANOSECONDS.toMillis(acceptResumeAt - System.nanoTime())));
+                    resumeAcceptor();
+                }
+                if (!selector.isOpen()) break;
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        accept(key);
+                        continue;
+                    }
+
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (key.isReadable()) connection.onReadable(readBuffer);
+                    if (key.isValid() && key.isWritable()) connection.flush();
+                }
+                // Tasks may also be queued by the handlers above, run them before selecting again
+                runTasks();
+                // Write everything the handlers and tasks produced, one write per connection
+                flushPending();
+            } catch (ClosedSelectorException e) {
+                // Shut down while selecting
+                return;
+            } catch (Exception e) {
+                // Never let a single failure kill the loop and every connection it owns
+                Log.error(e , "Event loop failure");
+            }
+        }
+    }
+
+    // Method to accept every pending connection on a server channel
+    @SuppressWarnings("unchecked")
+    private void accept(SelectionKey key) {
+        ServerSocketChannel serverChannel = (ServerSocketChannel) key.channel();
+        Consumer<SocketChannel> onAccept = (Consumer<SocketChannel>) key.attachment();
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                // E.g. out of file descriptors: the error would repeat on every select, so stop accepting for a while
+                // and leave the pending connections in the backlog
+                Metrics.acceptFailed();
+                Log.warn("Fail to accept a client, pausing accepts: %s" , e.getMessage());
+                key.interestOps(0);
+                pausedAcceptor = key;
+                acceptResumeAt = System.nanoTime() + ACCEPT_BACKOFF_NANOS;
+                return;
+            }
+            if (channel == null) return;
+            Metrics.connectionAccepted();
+            onAccept.accept(channel);
+        }
+    }
+
+    // Method to accept again once the pause after a failed accept is over
+    private void resumeAcceptor() {
+        if (System.nanoTime() - acceptResumeAt < 0) return;
+        if (pausedAcceptor.isValid()) pausedAcceptor.interestOps(SelectionKey.OP_ACCEPT);
+        pausedAcceptor = null;
+    }
+
+    // Method to flush every connection that staged output during this tick
+    private void flushPending() {
+        for (int i = 0; i < pendingFlushes.size(); i++) {
+            pendingFlushes.get(i).flush();
+        }
+        pendingFlushes.clear();
+    }
+
+    // Method to run the tasks submitted from other threads
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                Log.error(e , "Event loop task failure");
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
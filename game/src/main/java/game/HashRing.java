@@ -0,0 +1,65 @@
+package game;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Consistent hash ring mapping keys such as room names to cluster nodes.
+// Every node owns VIRTUAL_NODES points on a 64-bit ring and a key belongs to the first point at or after its hash,
+// so keys spread evenly and adding or removing a node only moves the keys next to its points.
+// The ring is built once from the node list, which is the same on every node, so all nodes agree on the owners.
+public final class HashRing {
+
+    public static final int VIRTUAL_NODES = 128; // Points per node on the ring
+
+    private final long[] points; // Hashes of the points, sorted
+    private final int[] owners; // Node index of each point
+
+    public HashRing(int nodes) {
+        long[] hashes = new long[nodes * VIRTUAL_NODES];
+        for (int node = 0; node < nodes; node++) {
+            for (int replica = 0; replica < VIRTUAL_NODES; replica++) {
+                // Node in the high bits, so the index can be found again once the hashes are sorted
+                hashes[node * VIRTUAL_NODES + replica] = mix(((long) node << 32) | replica);
+            }
+        }
+        long[] sorted = hashes.clone();
+        Arrays.sort(sorted);
+        this.points = sorted;
+        this.owners = new int[sorted.length];
+        for (int i = 0; i < hashes.length; i++) {
+            owners[Arrays.binarySearch(sorted , hashes[i])] = i / VIRTUAL_NODES;
+        }
+    }
+
+    // Method to get the node owning a key
+    public int owner(String key) {
+        return owner(hash(key));
+    }
+
+    // Method to get the node owning a hash
+    public int owner(long hash) {
+        int index = Arrays.binarySearch(points , hash);
+        if (index < 0) index = -index - 1; // First point after the hash
+        return owners[index == points.length ? 0 : index]; // Past the last point wraps to the first
+    }
+
+    // Static method to hash a key: FNV-1a over its UTF-8 bytes, then mixed so close keys land far apart
+    public static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // Static method to spread the bits of a value over the whole ring (the MurmurHash3 finalizer)
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,99 @@
+package game;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Coarse timer for very many timeouts, e.g. one read deadline per session.
+// Timeouts are hashed by their deadline tick into a fixed ring of buckets; one thread advances a tick at a time
+// and only looks at the bucket under the cursor, so scheduling is O(1) and an idle server costs one wakeup per tick
+// however many timeouts are pending. Deadlines are rounded up to whole ticks.
+public class HashedWheelTimer {
+
+    // One scheduled task
+    private static final class Timeout {
+        final Runnable task;
+        final long deadlineTick; // Tick at which the task runs
+        long rounds; // Full turns of the wheel left before it is due, set when it is put in its bucket
+
+        Timeout(Runnable task , long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    private final long tickNanos; // Length of one tick
+    private final ArrayDeque<Timeout>[] wheel; // Buckets, only touched by the timer thread
+    private final int mask; // Wheel size - 1, the size is a power of two
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>(); // Timeouts scheduled since the last tick
+    private final long startNanos = System.nanoTime();
+    private volatile long tick; // Ticks elapsed since the timer started
+    private final Thread thread;
+
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(String name , long tickDuration , TimeUnit unit , int wheelSize) {
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(Math.max(2 , wheelSize - 1) << 1);
+        this.wheel = new ArrayDeque[size];
+        for (int i = 0; i < size; i++) wheel[i] = new ArrayDeque<>();
+        this.mask = size - 1;
+        this.thread = new Thread(this::run , name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // Method to run a task once the delay has passed, on the timer thread; tasks must be short and never block
+    public void schedule(Runnable task , long delay , TimeUnit unit) {
+        long ticks = (unit.toNanos(delay) + tickNanos - 1) / tickNanos;
+        incoming.add(new Timeout(task , tick + Math.max(1 , ticks)));
+    }
+
+    // Method to get the number of ticks elapsed, a cheap clock for recording activity
+    public long currentTick() {
+        return tick;
+    }
+
+    // Method to convert a duration to whole ticks, rounded up
+    public long toTicks(long duration , TimeUnit unit) {
+        return (unit.toNanos(duration) + tickNanos - 1) / tickNanos;
+    }
+
+    private void run() {
+        while (true) {
+            // Sleep until the next tick is due
+            long nextTickAt = startNanos + (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = nextTickAt - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(sleep);
+            }
+            long current = tick + 1;
+            tick = current;
+
+            // Place the timeouts scheduled since the last tick
+            Timeout timeout;
+            while ((timeout = incoming.poll()) != null) {
+                long due = Math.max(timeout.deadlineTick , current);
+                timeout.rounds = (due - current) / wheel.length;
+                wheel[(int) (due & mask)].add(timeout);
+            }
+
+            // Run what is due in the bucket under the cursor
+            ArrayDeque<Timeout> bucket = wheel[(int) (current & mask)];
+            for (int i = bucket.size(); i > 0; i--) {
+                timeout = bucket.poll();
+                if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                    bucket.add(timeout);
+                    continue;
+                }
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    Log.error(e , "Timer task failure");
+                }
+            }
+        }
+    }
+}
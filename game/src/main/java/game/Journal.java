@@ -0,0 +1,390 @@
+package game;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+// Durable store of the participants and their points.
+// Sessions only queue small records (a registration or a new score); a single writer thread appends them to
+// memory-mapped journal segments and forces each batch to disk at once (group commit), so no session ever waits
+// for the disk. Whenever a segment fills up, the writer saves a snapshot of every participant and deletes the
+// segments the snapshot covers. On startup the latest snapshot is loaded and the newer segments are replayed.
+// Resume tokens are stored with the registrations, so the server can park the recovered participants for resuming.
+//
+// Files:   snapshot-N.bin   participants as of the start of segment N
+//          journal-N.log    records appended after that
+// Record:  int length | type (1 byte) | fields | int CRC32C of type and fields      (a zero length ends a segment)
+//   REGISTER   long id , long token , name , surname , age       (2-byte length + UTF-8 each)
+//   SCORE      long id , int points
+public final class Journal implements Closeable {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024; // Bytes per journal segment
+
+    private static final int MAX_TEXT_LENGTH = 0xFFFF; // Longest name, surname or age, in UTF-8 bytes
+    private static final byte REGISTER = 1;
+    private static final byte SCORE = 2;
+    private static final int SNAPSHOT_MAGIC = 0x51554953; // "QUIS"
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // Writer sleep when nothing is queued
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(20); // Longest sleep, reached while nothing is journaled
+
+    private static volatile Journal current; // Journal used by the sessions, null when persistence is off
+
+    private final Path directory; // Directory holding the segments and snapshots
+    private final long segmentSize; // Size of every segment file
+    private final ConcurrentHashMap<Long, Participant> participants = new ConcurrentHashMap<>(); // State as of the last appended record
+    private final ConcurrentHashMap<Long, Long> tokens = new ConcurrentHashMap<>(); // Resume token of each participant
+    private final ConcurrentLinkedQueue<byte[]> pending = new ConcurrentLinkedQueue<>(); // Record bodies waiting for the writer
+    private final CRC32C crc = new CRC32C(); // Only used by recovery, then by the writer thread
+    private final Thread writer;
+    private volatile boolean closing; // Set by close, the writer drains the queue and stops
+    private long segment; // Index of the segment being appended to
+    private FileChannel channel; // Channel of that segment
+    private MappedByteBuffer mapped; // Mapping of that segment, positioned at the next record
+    private int forced; // Offset up to which that segment is on disk
+    private long lastId; // Highest participant ID seen
+    private long recoveredEvents; // Records replayed on startup
+
+    private Journal(Path directory , long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.writer = new Thread(this::drain , "journal-writer");
+        this.writer.setDaemon(true);
+    }
+
+    // Static method to get the journal used by the sessions, or null when persistence is off
+    public static Journal current() {
+        return current;
+    }
+
+    // Static method to choose the journal used by the sessions
+    public static void use(Journal journal) {
+        current = journal;
+    }
+
+    // Static method to open a journal directory, recovering the participants it holds, and start its writer
+    public static Journal open(Path directory , long segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        Journal journal = new Journal(directory , segmentSize);
+        long start = System.nanoTime();
+        journal.recover();
+        Log.info("Recovered %d participants from %s (%d events replayed) in %d ms" , journal.participants.size() ,
+                directory , journal.recoveredEvents , TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        journal.writer.start();
+        return journal;
+    }
+
+    // Method to get the highest participant ID in the journal, new IDs must come after it
+    public long lastId() {
+        return lastId;
+    }
+
+    // Callback of forEachParticipant
+    public interface ParticipantVisitor {
+        void visit(long id , long token , Participant participant);
+    }
+
+    // Method to visit every participant as of the last record written, in ID order, e.g. to restore them on startup.
+    // The participants belong to the journal and must not be modified.
+    public void forEachParticipant(ParticipantVisitor visitor) {
+        long[] ids = participants.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        for (long id : ids) {
+            Participant participant = participants.get(id);
+            if (participant != null) visitor.visit(id , tokens.get(id) , participant);
+        }
+    }
+
+    // Method to get the number of participants in the journal
+    public int size() {
+        return participants.size();
+    }
+
+    // Method to queue the registration of a participant, with the token it can resume its session with
+    public void register(long id , long token , String name , String surname , String age) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] surnameBytes = surname.getBytes(StandardCharsets.UTF_8);
+        byte[] ageBytes = age.getBytes(StandardCharsets.UTF_8);
+        if (Math.max(nameBytes.length , Math.max(surnameBytes.length , ageBytes.length)) > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("Register info too long");
+        }
+        ByteBuffer body = ByteBuffer.allocate(1 + 8 + 8 + 6 + nameBytes.length + surnameBytes.length + ageBytes.length);
+        body.put(REGISTER).putLong(id).putLong(token);
+        putText(body , nameBytes);
+        putText(body , surnameBytes);
+        putText(body , ageBytes);
+        pending.add(body.array());
+    }
+
+    // Method to queue a participant's new number of points
+    public void score(long id , int points) {
+        pending.add(ByteBuffer.allocate(1 + 8 + 4).put(SCORE).putLong(id).putInt(points).array());
+    }
+
+    // Method to write everything still queued, force it to disk and stop the writer
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    // Writer loop: append every queued record, then force the whole batch with one sync
+    private void drain() {
+        long idle = IDLE_NANOS;
+        while (true) {
+            int batch = 0;
+            try {
+                byte[] body;
+                while ((body = pending.poll()) != null) {
+                    append(body);
+                    batch++;
+                }
+                if (batch > 0) forceWritten();
+            } catch (IOException e) {
+                Log.error(e , "Fail to write the journal");
+            }
+
+            if (batch > 0) {
+                idle = IDLE_NANOS;
+                continue;
+            }
+            if (closing) return;
+            // Back off while the server is quiet, a new record waits at most one sleep
+            LockSupport.parkNanos(idle);
+            idle = Math.min(idle * 2 , MAX_IDLE_NANOS);
+        }
+    }
+
+    // Method to append one record, moving on to a new segment when the current one is full
+    private void append(byte[] body) throws IOException {
+        if (mapped.remaining() < body.length + 8) rollover();
+        crc.reset();
+        crc.update(body);
+        mapped.putInt(body.length).put(body).putInt((int) crc.getValue());
+        apply(ByteBuffer.wrap(body));
+    }
+
+    // Method to force the records appended since the last force to disk, and only those,
+    // so a sync costs as much as its batch and not the whole segment
+    private void forceWritten() {
+        int position = mapped.position();
+        if (position > forced) mapped.force(forced , position - forced);
+        forced = position;
+    }
+
+    // Method to close the full segment: snapshot every participant, start the next segment, delete the old files
+    private void rollover() throws IOException {
+        forceWritten();
+        channel.close();
+        long next = segment + 1;
+        writeSnapshot(next);
+        openSegment(next , false);
+        deleteBefore(next);
+    }
+
+    // Method to load the latest snapshot and replay the segments written after it
+    private void recover() throws IOException {
+        List<Long> snapshots = indexes("snapshot-" , ".bin");
+        List<Long> segments = indexes("journal-" , ".log");
+
+        long first = 0;
+        if (!snapshots.isEmpty()) {
+            first = snapshots.get(snapshots.size() - 1);
+            readSnapshot(snapshotFile(first));
+        }
+
+        long last = segments.isEmpty() ? first : Math.max(first , segments.get(segments.size() - 1));
+        for (long index : segments) {
+            if (index < first || index == last) continue;
+            try (FileChannel file = FileChannel.open(segmentFile(index) , StandardOpenOption.READ)) {
+                replay(file.map(FileChannel.MapMode.READ_ONLY , 0 , file.size()));
+            }
+        }
+
+        // Replay the newest segment too, then keep appending to it after its last valid record
+        openSegment(last , true);
+        deleteBefore(first);
+    }
+
+    // Method to apply every valid record of a segment, returning the offset after the last one
+    private int replay(ByteBuffer buffer) {
+        while (buffer.remaining() >= 8) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - 4) {
+                buffer.position(start);
+                break;
+            }
+            ByteBuffer body = buffer.slice(buffer.position() , length);
+            crc.reset();
+            crc.update(body.duplicate());
+            buffer.position(buffer.position() + length);
+            if (buffer.getInt() != (int) crc.getValue()) {
+                // Torn write, nothing after it was acknowledged
+                buffer.position(start);
+                break;
+            }
+            apply(body);
+            recoveredEvents++;
+        }
+        return buffer.position();
+    }
+
+    // Method to update the in-memory state with one record
+    private void apply(ByteBuffer body) {
+        byte type = body.get();
+        long id = body.getLong();
+        lastId = Math.max(lastId , id);
+        if (type == REGISTER) {
+            tokens.put(id , body.getLong());
+            participants.put(id , new Participant(getText(body) , getText(body) , getText(body)));
+        } else if (type == SCORE) {
+            Participant participant = participants.get(id);
+            if (participant != null) participant.setPoints(body.getInt());
+        }
+    }
+
+    // Method to map a segment for appending, creating it if needed
+    private void openSegment(long index , boolean existing) throws IOException {
+        segment = index;
+        channel = FileChannel.open(segmentFile(index) ,
+                StandardOpenOption.CREATE , StandardOpenOption.READ , StandardOpenOption.WRITE);
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE , 0 , Math.max(channel.size() , segmentSize));
+        forced = 0;
+        if (!existing) return;
+
+        int end = replay(mapped.duplicate().clear());
+        mapped.position(end);
+        forced = end;
+        // Pages after a torn record may have reached the disk before it; clear them so they are never replayed
+        for (int i = end; i < mapped.limit(); i++) {
+            if (mapped.get(i) != 0) {
+                for (int j = end; j < mapped.limit(); j++) mapped.put(j , (byte) 0);
+                mapped.force(end , mapped.limit() - end);
+                break;
+            }
+        }
+    }
+
+    // Method to save every participant, written to a temporary file first so a crash never leaves half a snapshot
+    private void writeSnapshot(long index) throws IOException {
+        Path temporary = directory.resolve("snapshot.tmp");
+        CRC32C checksum = new CRC32C();
+        try (OutputStream file = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file , checksum) , 64 * 1024))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(lastId);
+            out.writeInt(participants.size());
+            for (Map.Entry<Long, Participant> entry : participants.entrySet()) {
+                Participant participant = entry.getValue();
+                out.writeLong(entry.getKey());
+                out.writeLong(tokens.get(entry.getKey()));
+                writeText(out , participant.name());
+                writeText(out , participant.surname());
+                writeText(out , participant.age());
+                out.writeInt(participant.Points);
+            }
+            out.flush();
+            file.write(ByteBuffer.allocate(4).putInt((int) checksum.getValue()).array());
+        }
+        try (FileChannel file = FileChannel.open(temporary , StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+        Files.move(temporary , snapshotFile(index) , StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Method to load a snapshot written by writeSnapshot
+    private void readSnapshot(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file , StandardOpenOption.READ)) {
+            ByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY , 0 , channel.size());
+            if (snapshot.limit() < 20) throw new IOException("Corrupt snapshot: " + file);
+            CRC32C checksum = new CRC32C();
+            checksum.update(snapshot.slice(0 , snapshot.limit() - 4));
+            if (snapshot.getInt(snapshot.limit() - 4) != (int) checksum.getValue()) {
+                throw new IOException("Corrupt snapshot: " + file);
+            }
+
+            if (snapshot.getInt() != SNAPSHOT_MAGIC) throw new IOException("Not a snapshot: " + file);
+            lastId = snapshot.getLong();
+            int count = snapshot.getInt();
+            for (int i = 0; i < count; i++) {
+                long id = snapshot.getLong();
+                tokens.put(id , snapshot.getLong());
+                Participant participant = new Participant(getText(snapshot) , getText(snapshot) , getText(snapshot));
+                participant.setPoints(snapshot.getInt());
+                participants.put(id , participant);
+            }
+        }
+    }
+
+    // Method to delete the segments and snapshots older than a segment index
+    private void deleteBefore(long index) throws IOException {
+        for (long old : indexes("journal-" , ".log")) {
+            if (old < index) Files.deleteIfExists(segmentFile(old));
+        }
+        for (long old : indexes("snapshot-" , ".bin")) {
+            if (old < index) Files.deleteIfExists(snapshotFile(old));
+        }
+    }
+
+    // Method to list the indexes of the files named prefix + index + suffix, in order
+    private List<Long> indexes(String prefix , String suffix) throws IOException {
+        List<Long> indexes = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .forEach(name -> indexes.add(Long.parseLong(name.substring(prefix.length() , name.length() - suffix.length()))));
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    private Path segmentFile(long index) {
+        return directory.resolve("journal-" + index + ".log");
+    }
+
+    private Path snapshotFile(long index) {
+        return directory.resolve("snapshot-" + index + ".bin");
+    }
+
+    private static void putText(ByteBuffer body , byte[] text) {
+        body.putShort((short) text.length).put(text);
+    }
+
+    private static void writeText(DataOutputStream out , String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getText(ByteBuffer buffer) {
+        byte[] text = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(text);
+        return new String(text , StandardCharsets.UTF_8);
+    }
+}
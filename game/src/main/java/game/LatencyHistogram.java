@@ -0,0 +1,96 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed-memory, lock-free histogram of latencies in nanoseconds (in the spirit of HdrHistogram).
+// Values below 64 are counted exactly; larger ones fall into 32 log-linear sub-buckets per power of two,
+// so every reported value is within about 3% of the recorded one.
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5; // 32 sub-buckets per power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int EXACT = SUB_BUCKETS * 2; // Values below this are counted exactly
+    private static final int BUCKETS = EXACT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); // Number of values per bucket
+    private final LongAdder count = new LongAdder(); // Number of recorded values
+    private final LongAdder sum = new LongAdder(); // Sum of the recorded values
+    private final LongAccumulator max = new LongAccumulator(Math::max , 0); // Largest recorded value
+
+    // Method to record one value; negative values are counted as zero
+    public void record(long nanos) {
+        long value = Math.max(0 , nanos);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    // Method to get the number of recorded values
+    public long count() {
+        return count.sum();
+    }
+
+    // Method to get the mean of the recorded values, or 0 if there are none
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    // Method to get the largest recorded value
+    public long max() {
+        return max.get();
+    }
+
+    // Method to get the value at a percentile (0-100), reported as the top of its bucket
+    public long percentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+
+        long target = Math.max(1 , (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) return Math.min(highestValueAt(i) , max());
+        }
+        return max();
+    }
+
+    // Method to clear every recorded value
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i , 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    // Method to describe the distribution in microseconds, e.g. for reports
+    public String summary() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus" ,
+                count() , mean() / 1_000 , percentile(50) / 1_000.0 , percentile(90) / 1_000.0 ,
+                percentile(99) / 1_000.0 , percentile(99.9) / 1_000.0 , max() / 1_000.0);
+    }
+
+    private static int indexOf(long value) {
+        if (value < EXACT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return EXACT + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < EXACT) return index;
+        int shift = (index - EXACT) / SUB_BUCKETS + 1;
+        long subBucket = (index - EXACT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
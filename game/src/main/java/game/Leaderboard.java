@@ -0,0 +1,284 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongPredicate;
+
+// Server-wide live leaderboard, indexed by score.
+// Every score below maxScore has a bucket of the players holding it, and a Fenwick tree over the bucket sizes
+// answers "how many players score more than s" in O(log scores), so a player's rank costs O(log scores).
+// The top-K descends the same tree to the next non-empty bucket, O(log scores) per bucket however sparse the
+// scores are. The tree is striped: each thread adds to its own copy of the counters and reads sum them, so
+// concurrent answers never contend on the upper nodes every update touches. Updates only touch two buckets
+// and O(log scores) counters, all with atomics, so concurrent answers never take a lock.
+// Scores from maxScore up (speed scoring with weights gets there) are few, and kept exactly in a sorted map;
+// the tree counts them all in its last bucket. The rank of a player from maxScore up is O(players above it),
+// as it counts the map's head with headMap(...).size(), which walks the skip list; ranks below maxScore and the
+// top-K do not depend on how many players are above it.
+// Ranks use competition ranking: players with the same score share a rank.
+public class Leaderboard {
+
+    private static final int MAX_SCORE = 1 << 16; // Scores from this one up are kept in the sorted map
+    private static final int STRIPES = Math.min(16 ,
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1)); // Copies of the tree, a power of two
+    private static final Leaderboard global = new Leaderboard(MAX_SCORE);
+
+    private final int maxScore; // Lowest score without a bucket of its own
+    private final AtomicIntegerArray[] tree; // Fenwick trees of bucket sizes, indexed by score + 1, one per stripe
+    private final int topStep; // Highest power of two below the tree length, where descents start
+    private final AtomicReferenceArray<Set<Entry>> buckets; // Players per score below maxScore, created on first use
+    private final ConcurrentSkipListMap<HighScore, Entry> high = new ConcurrentSkipListMap<>(); // Players from maxScore up, best first
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>(); // Players by client ID
+
+    // One player on the board
+    public static final class Entry {
+        private final long clientId; // Client ID of the player
+        private final String name; // Name shown on the board
+        private volatile int score; // Current score, only changed by the player's own updates
+
+        Entry(long clientId , String name , int score) {
+            this.clientId = clientId;
+            this.name = name;
+            this.score = score;
+        }
+
+        public long clientId() {
+            return clientId;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public int score() {
+            return score;
+        }
+    }
+
+    // One line of a top-K query
+    public static final class Ranked {
+        public final int rank;
+        public final String name;
+        public final int score;
+
+        Ranked(int rank , String name , int score) {
+            this.rank = rank;
+            this.name = name;
+            this.score = score;
+        }
+    }
+
+    // Key of a player in the sorted map of high scores: best score first, then by client ID
+    private static final class HighScore implements Comparable<HighScore> {
+        private static final Comparator<HighScore> ORDER = Comparator.<HighScore>comparingInt(key -> -key.score)
+                .thenComparingLong(key -> key.clientId);
+
+        private final int score;
+        private final long clientId;
+
+        HighScore(int score , long clientId) {
+            this.score = score;
+            this.clientId = clientId;
+        }
+
+        @Override
+        public int compareTo(HighScore other) {
+            return ORDER.compare(this , other);
+        }
+    }
+
+    public Leaderboard(int maxScore) {
+        this.maxScore = maxScore;
+        this.tree = new AtomicIntegerArray[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            tree[i] = new AtomicIntegerArray(maxScore + 2);
+        }
+        this.topStep = Integer.highestOneBit(maxScore + 1);
+        this.buckets = new AtomicReferenceArray<>(maxScore);
+    }
+
+    // Static method to get the board shared by the whole server
+    public static Leaderboard global() {
+        return global;
+    }
+
+    // Method to put a player on the board, replacing any previous entry with the same client ID
+    public void add(long clientId , String name , int score) {
+        Entry entry = new Entry(clientId , name , score);
+        Entry previous = entries.put(clientId , entry);
+        if (previous != null) unlink(previous , previous.score);
+        link(entry , score);
+    }
+
+    // Method to take a player off the board
+    public void remove(long clientId) {
+        Entry entry = entries.remove(clientId);
+        if (entry != null) unlink(entry , entry.score);
+    }
+
+    // Method to take every player whose client ID matches off the board, e.g. the players of a cluster node that went down
+    public void removeIf(LongPredicate clientIds) {
+        for (Long clientId : entries.keySet()) {
+            if (clientIds.test(clientId)) remove(clientId);
+        }
+    }
+
+    // Method to set a player's score, putting it on the board if it is not there yet
+    public void put(long clientId , String name , int score) {
+        if (entries.containsKey(clientId)) {
+            update(clientId , score);
+        } else {
+            add(clientId , name , score);
+        }
+    }
+
+    // Method to move a player to a new score; updates of one player must not run concurrently
+    public void update(long clientId , int score) {
+        Entry entry = entries.get(clientId);
+        if (entry == null) return;
+        int previous = entry.score;
+        if (bucketOf(previous) != bucketOf(score) || (bucketOf(score) == maxScore && previous != score)) {
+            // Link first, so the player is never missing from the board
+            link(entry , score);
+            unlink(entry , previous);
+        }
+        entry.score = score;
+        // The player may have left while moving, e.g. a room scoring a session that just closed
+        if (entries.get(clientId) != entry) unlink(entry , score);
+    }
+
+    // Method to get the rank of a player (1 is best), or 0 if it is not on the board
+    public int rank(long clientId) {
+        Entry entry = entries.get(clientId);
+        if (entry == null) return 0;
+        int score = entry.score;
+        int bucket = bucketOf(score);
+        if (bucket < maxScore) return 1 + countAbove(bucket);
+        // Players above in the sorted map: the ones with a better score come before this key
+        return 1 + high.headMap(new HighScore(score , Long.MIN_VALUE)).size();
+    }
+
+    // Method to get the number of players on the board
+    public int size() {
+        return entries.size();
+    }
+
+    // Method to get the best k players, best first
+    public List<Ranked> top(int k) {
+        List<Ranked> result = new ArrayList<>(Math.min(k , 64));
+        int above = 0;
+        int rank = 0;
+        int previous = -1;
+        for (Map.Entry<HighScore, Entry> player : high.entrySet()) {
+            if (result.size() >= k) return result;
+            int score = player.getKey().score;
+            if (score != previous) rank = above + 1;
+            previous = score;
+            result.add(new Ranked(rank , player.getValue().name , score));
+            above++;
+        }
+        // Only players with a score below maxScore are left, in the buckets
+        for (int bucket = highestNonEmpty(maxScore - 1); bucket >= 0 && result.size() < k; bucket = highestNonEmpty(bucket - 1)) {
+            Set<Entry> players = buckets.get(bucket);
+            if (players == null || players.isEmpty()) continue; // Emptied since the tree was read
+
+            rank = above + 1;
+            for (Entry entry : players) {
+                if (result.size() >= k) break;
+                result.add(new Ranked(rank , entry.name , entry.score));
+            }
+            above += players.size();
+        }
+        return result;
+    }
+
+    private void link(Entry entry , int score) {
+        int bucket = bucketOf(score);
+        if (bucket == maxScore) {
+            high.put(new HighScore(score , entry.clientId) , entry);
+        } else {
+            Set<Entry> players = buckets.get(bucket);
+            if (players == null) {
+                buckets.compareAndSet(bucket , null , ConcurrentHashMap.newKeySet());
+                players = buckets.get(bucket);
+            }
+            players.add(entry);
+        }
+        add(bucket , 1);
+    }
+
+    private void unlink(Entry entry , int score) {
+        int bucket = bucketOf(score);
+        boolean removed;
+        if (bucket == maxScore) {
+            removed = high.remove(new HighScore(score , entry.clientId) , entry);
+        } else {
+            Set<Entry> players = buckets.get(bucket);
+            removed = players != null && players.remove(entry);
+        }
+        if (removed) add(bucket , -1);
+    }
+
+    private int bucketOf(int score) {
+        return Math.max(0 , Math.min(score , maxScore));
+    }
+
+    // Fenwick tree: add delta to the size of a bucket, in the calling thread's stripe
+    private void add(int bucket , int delta) {
+        AtomicIntegerArray stripe = tree[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+        for (int i = bucket + 1; i < stripe.length(); i += i & -i) {
+            stripe.addAndGet(i , delta);
+        }
+    }
+
+    // Fenwick tree: one node summed over the stripes
+    private int node(int i) {
+        int sum = 0;
+        for (AtomicIntegerArray stripe : tree) {
+            sum += stripe.get(i);
+        }
+        return sum;
+    }
+
+    // Fenwick tree: number of players in buckets above the given one
+    private int countAbove(int bucket) {
+        return prefix(maxScore + 1) - prefix(bucket + 1);
+    }
+
+    // Fenwick tree: number of players in the first n buckets
+    private int prefix(int n) {
+        int sum = 0;
+        for (int i = n; i > 0; i -= i & -i) {
+            sum += node(i);
+        }
+        return sum;
+    }
+
+    // Fenwick tree: the highest non-empty bucket up to the given one, or -1 if there is none.
+    // Descends to the first bucket where the running count reaches the count of buckets 0 to bucket.
+    private int highestNonEmpty(int bucket) {
+        if (bucket < 0) return -1;
+        int remaining = prefix(bucket + 1);
+        if (remaining <= 0) return -1;
+        int position = 0;
+        for (int step = topStep; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < tree[0].length()) {
+                int count = node(next);
+                if (count < remaining) {
+                    position = next;
+                    remaining -= count;
+                }
+            }
+        }
+        // position + 1 is the tree index of the bucket; a concurrent update can push the descent past bucket
+        return Math.min(position , bucket);
+    }
+}
@@ -0,0 +1,82 @@
+package game;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+// Listening sockets of the server.
+// With more than one acceptor every acceptor gets its own socket bound to the same address with SO_REUSEPORT,
+// and the kernel spreads incoming connections across them (Linux 3.9+), so a connect burst is accepted on
+// several cores instead of queueing behind a single accept loop. The backlog bounds each socket's queue of
+// connections waiting to be accepted; the kernel caps it at net.core.somaxconn.
+public final class Listeners {
+
+    public static final int DEFAULT_BACKLOG = 1024; // Connections queued per socket, the JDK default is 50
+
+    private Listeners() {
+    }
+
+    // Static method to check if listening sockets can share an address with SO_REUSEPORT on this platform
+    public static boolean isReusePortSupported() {
+        try (ServerSocketChannel probe = ServerSocketChannel.open()) {
+            return probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Static method to get how many acceptors can actually be used, falling back to one without SO_REUSEPORT
+    public static int usableAcceptors(int acceptors) {
+        if (acceptors <= 1) return 1;
+        if (isReusePortSupported()) return acceptors;
+        Log.warn("SO_REUSEPORT is not supported on this platform, using a single acceptor");
+        return 1;
+    }
+
+    // Static method to bind count blocking server sockets to the address; port 0 picks one free port for all of them
+    public static List<ServerSocket> openBlocking(InetSocketAddress address , int backlog , int count) throws IOException {
+        List<ServerSocket> sockets = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                ServerSocket socket = new ServerSocket();
+                sockets.add(socket);
+                if (count > 1) socket.setOption(StandardSocketOptions.SO_REUSEPORT , true);
+                socket.bind(address , backlog);
+                // The next sockets share the port the first one got
+                address = new InetSocketAddress(address.getAddress() , socket.getLocalPort());
+            }
+        } catch (IOException e) {
+            for (ServerSocket socket : sockets) {
+                socket.close();
+            }
+            throw e;
+        }
+        return sockets;
+    }
+
+    // Static method to bind count non-blocking server channels to the address; port 0 picks one free port for all of them
+    public static List<ServerSocketChannel> openChannels(InetSocketAddress address , int backlog , int count) throws IOException {
+        List<ServerSocketChannel> channels = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                ServerSocketChannel channel = ServerSocketChannel.open();
+                channels.add(channel);
+                if (count > 1) channel.setOption(StandardSocketOptions.SO_REUSEPORT , true);
+                channel.bind(address , backlog);
+                channel.configureBlocking(false);
+                // The next channels share the port the first one got
+                address = new InetSocketAddress(address.getAddress() , ((InetSocketAddress) channel.getLocalAddress()).getPort());
+            }
+        } catch (IOException e) {
+            for (ServerSocketChannel channel : channels) {
+                channel.close();
+            }
+            throw e;
+        }
+        return channels;
+    }
+}
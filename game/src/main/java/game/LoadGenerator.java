@@ -0,0 +1,459 @@
+package game;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless load generator: simulates many players against a running Server.
+// Each player connects, registers, plays a number of questions with scripted or random answers
+// after a think time, then quits. A few selector threads drive every player without blocking.
+//
+// With --room every player joins the same room instead, and answers the questions the room pushes.
+//
+// Usage: LoadGenerator [--host=localhost] [--port=8888] [--players=1000] [--questions=5] [--think-ms=0]
+//                      [--answers=random|ABCD...] [--threads=N] [--binary] [--room=name]
+public class LoadGenerator {
+
+    private static final int MAX_PENDING_CONNECTS = 64; // Connects in flight per driver, so bursts do not overflow the backlog
+
+    // Player states
+    private static final int CONNECTING = 0;
+    private static final int AWAIT_REGISTER = 1;
+    private static final int AWAIT_JOIN = 7;
+    private static final int AWAIT_QUIZ = 2;
+    private static final int THINKING = 3;
+    private static final int AWAIT_RESULT = 4;
+    private static final int AWAIT_QUIT = 5;
+    private static final int DONE = 6;
+
+    private final InetSocketAddress address; // Server to load
+    private final int players; // Number of simulated players
+    private final int questions; // Questions each player answers before quitting
+    private final long thinkNanos; // Delay between receiving a question and answering it
+    private final String answers; // Scripted answers cycled by every player, or null for random answers
+    private final int threads; // Number of selector threads driving the players
+    private final boolean binary; // Whether players talk the binary protocol
+    private final String room; // Room every player joins, or null to play alone
+
+    // Latency per operation
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+    private final LatencyHistogram registerLatency = new LatencyHistogram();
+    private final LatencyHistogram joinLatency = new LatencyHistogram();
+    private final LatencyHistogram quizLatency = new LatencyHistogram();
+    private final LatencyHistogram answerLatency = new LatencyHistogram();
+    private final LatencyHistogram quitLatency = new LatencyHistogram();
+
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder errors = new LongAdder(); // ERROR replies from the server
+    private final LongAdder failures = new LongAdder(); // Players whose connection failed or closed early
+
+    public LoadGenerator(InetSocketAddress address , int players , int questions , long thinkNanos , String answers , int threads , boolean binary , String room) {
+        this.address = address;
+        this.players = players;
+        this.questions = questions;
+        this.thinkNanos = thinkNanos;
+        this.answers = answers;
+        this.threads = threads;
+        this.binary = binary;
+        this.room = room;
+    }
+
+    // Entry point of the load generator
+    public static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = 8888;
+        int players = 1000;
+        int questions = 5;
+        long thinkMillis = 0;
+        String answers = null;
+        int threads = Math.max(1 , Runtime.getRuntime().availableProcessors() / 2);
+        boolean binary = false;
+        String room = null;
+
+        for (String arg : args) {
+            if (arg.startsWith("--host=")) host = arg.substring("--host=".length());
+            else if (arg.startsWith("--port=")) port = Integer.parseInt(arg.substring("--port=".length()));
+            else if (arg.startsWith("--players=")) players = Integer.parseInt(arg.substring("--players=".length()));
+            else if (arg.startsWith("--questions=")) questions = Integer.parseInt(arg.substring("--questions=".length()));
+            else if (arg.startsWith("--think-ms=")) thinkMillis = Long.parseLong(arg.substring("--think-ms=".length()));
+            else if (arg.startsWith("--answers=")) answers = arg.substring("--answers=".length());
+            else if (arg.startsWith("--threads=")) threads = Integer.parseInt(arg.substring("--threads=".length()));
+            else if (arg.equals("--binary")) binary = true;
+            else if (arg.startsWith("--room=")) room = arg.substring("--room=".length());
+            else {
+                System.out.printf("Unknown argument: %s\n" , arg);
+                return;
+            }
+        }
+        if ("random".equals(answers)) answers = null;
+
+        LoadGenerator generator = new LoadGenerator(new InetSocketAddress(host , port) , players , questions ,
+                thinkMillis * 1_000_000 , answers , threads , binary , room);
+        generator.run();
+    }
+
+    // Method to run every player to completion and print the report
+    public void run() throws InterruptedException , IOException {
+        System.out.printf("Simulating %d players (%d questions each, think %d ms, %s%s) against %s with %d threads\n" ,
+                players , questions , thinkNanos / 1_000_000 , binary ? "binary" : "text" ,
+                room == null ? "" : ", room " + room , address , threads);
+
+        CountDownLatch finished = new CountDownLatch(threads);
+        Driver[] drivers = new Driver[threads];
+        for (int i = 0; i < threads; i++) {
+            // Spread the players evenly over the drivers
+            int share = players / threads + (i < players % threads ? 1 : 0);
+            drivers[i] = new Driver(share , finished);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            new Thread(drivers[i] , "load-driver-" + i).start();
+        }
+        finished.await();
+        report(System.nanoTime() - start);
+    }
+
+    // Method to print throughput and latency per operation
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long sent = messagesSent.sum();
+        long received = messagesReceived.sum();
+        System.out.printf("Finished in %.2f s: %d players, %d failed, %d errors\n" , seconds , players , failures.sum() , errors.sum());
+        System.out.printf("Messages: %d sent, %d received, %.0f msg/s\n" , sent , received , (sent + received) / seconds);
+        System.out.printf("connect   %s\n" , connectLatency.summary());
+        System.out.printf("register  %s\n" , registerLatency.summary());
+        if (room != null) System.out.printf("join      %s\n" , joinLatency.summary());
+        System.out.printf("quiz      %s\n" , quizLatency.summary());
+        System.out.printf("answer    %s\n" , answerLatency.summary());
+        System.out.printf("quit      %s\n" , quitLatency.summary());
+    }
+
+    // Selector thread driving a share of the players
+    private final class Driver implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Player> waitingToConnect = new ArrayDeque<>(); // Players not connected yet
+        private final PriorityQueue<Player> thinking = new PriorityQueue<>(Comparator.comparingLong((Player p) -> p.wakeAt));
+        private final CountDownLatch finished;
+        private final byte[] out = new byte[256]; // Reused to encode outgoing messages
+        private int pendingConnects; // Connects in flight
+        private int remaining; // Players not done yet
+
+        Driver(int players , CountDownLatch finished) throws IOException {
+            this.selector = Selector.open();
+            this.finished = finished;
+            this.remaining = players;
+            for (int i = 0; i < players; i++) {
+                waitingToConnect.add(new Player());
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (remaining > 0) {
+                    startConnects();
+                    long now = System.nanoTime();
+                    wakeThinkers(now);
+
+                    // Sleep until the next player finishes thinking, or until the network has something
+                    Player next = thinking.peek();
+                    if (next == null) {
+                        selector.select();
+                    } else {
+                        long waitMillis = Math.max(1 , (next.wakeAt - now) / 1_000_000);
+                        selector.select(waitMillis);
+                    }
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Player player = (Player) key.attachment();
+                        if (!key.isValid()) continue;
+                        try {
+                            if (key.isConnectable()) player.onConnected();
+                            else {
+                                if (key.isReadable()) player.onReadable();
+                                if (key.isValid() && key.isWritable()) player.flush();
+                            }
+                        } catch (IOException e) {
+                            player.fail();
+                        }
+                    }
+                }
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        // Method to start connecting more players, keeping a bounded number of connects in flight
+        private void startConnects() {
+            while (pendingConnects < MAX_PENDING_CONNECTS && !waitingToConnect.isEmpty()) {
+                Player player = waitingToConnect.poll();
+                pendingConnects++;
+                try {
+                    player.connect();
+                } catch (IOException e) {
+                    player.fail();
+                }
+            }
+        }
+
+        // Method to send the answers of every player whose think time is over
+        private void wakeThinkers(long now) {
+            while (!thinking.isEmpty() && thinking.peek().wakeAt <= now) {
+                Player player = thinking.poll();
+                if (player.state != THINKING) continue;
+                try {
+                    player.answer();
+                } catch (IOException e) {
+                    player.fail();
+                }
+            }
+        }
+
+        // One simulated player
+        private final class Player {
+
+            private SocketChannel channel;
+            private SelectionKey key;
+            private final ByteBuffer in = ByteBuffer.allocate(4096); // Bytes received and not parsed yet
+            private ByteBuffer pendingOut; // Bytes the socket did not accept yet
+            private final int[] frameLength = new int[1];
+            private int state = CONNECTING;
+            private long sentAt; // When the request being waited for was sent
+            private long wakeAt; // When to answer while thinking
+            private int answered; // Questions answered so far
+
+            // Method to start a non-blocking connect
+            void connect() throws IOException {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY , true);
+                sentAt = System.nanoTime();
+                key = channel.register(selector , SelectionKey.OP_CONNECT , this);
+                if (channel.connect(address)) onConnected();
+            }
+
+            // Method called once the connection is established: ask for the protocol and register
+            void onConnected() throws IOException {
+                if (!channel.finishConnect()) return;
+                pendingConnects--;
+                connectLatency.record(System.nanoTime() - sentAt);
+                key.interestOps(SelectionKey.OP_READ);
+
+                int length = 0;
+                if (binary) {
+                    out[length++] = (byte) BinaryProtocol.MAGIC;
+                    byte[] frame = BinaryProtocol.frame(BinaryProtocol.REGISTER , "Load" , "Player" , "30");
+                    System.arraycopy(frame , 0 , out , length , frame.length);
+                    length += frame.length;
+                } else {
+                    byte[] line = "REGISTER;;Load,Player,30\n".getBytes(StandardCharsets.UTF_8);
+                    System.arraycopy(line , 0 , out , 0 , line.length);
+                    length = line.length;
+                }
+                send(out , length , AWAIT_REGISTER);
+            }
+
+            // Method to read and handle every complete message from the server
+            void onReadable() throws IOException {
+                int read = channel.read(in);
+                if (read < 0) {
+                    if (state == AWAIT_QUIT) {
+                        quitLatency.record(System.nanoTime() - sentAt);
+                        done();
+                    } else {
+                        fail();
+                    }
+                    return;
+                }
+
+                in.flip();
+                byte[] array = in.array();
+                int position = 0;
+                int limit = in.limit();
+                while (position < limit && state != DONE) {
+                    if (binary) {
+                        int body = BinaryProtocol.findFrame(array , position , limit , frameLength);
+                        if (body < 0) break;
+                        handle(array[body]);
+                        position = body + frameLength[0];
+                    } else {
+                        int end = position;
+                        while (end < limit && array[end] != '\n') end++;
+                        if (end == limit) break;
+                        int delimiter = TextProtocol.indexOfDelimiter(array , position , end);
+                        handle(delimiter < 0 ? TextProtocol.UNKNOWN : TextProtocol.eventOpcode(array , position , delimiter - position));
+                        position = end + 1;
+                    }
+                }
+                in.position(position);
+                in.compact();
+            }
+
+            // Method to advance the state machine on a server message
+            private void handle(byte opcode) throws IOException {
+                messagesReceived.increment();
+                long latency = System.nanoTime() - sentAt;
+                switch (opcode) {
+                    case BinaryProtocol.REGISTER:
+                        registerLatency.record(latency);
+                        if (room != null) {
+                            joinRoom();
+                        } else {
+                            sendEvent(BinaryProtocol.QUIZ , AWAIT_QUIZ);
+                        }
+                        break;
+                    case BinaryProtocol.JOIN_ROOM:
+                        joinLatency.record(latency);
+                        // Questions are pushed by the room from now on
+                        state = AWAIT_QUIZ;
+                        break;
+                    case BinaryProtocol.QUIZ:
+                        // Pushed room questions answer no request, so there is nothing to time
+                        if (room == null) quizLatency.record(latency);
+                        if (thinkNanos == 0) {
+                            answer();
+                        } else {
+                            state = THINKING;
+                            wakeAt = System.nanoTime() + thinkNanos;
+                            thinking.add(this);
+                        }
+                        break;
+                    case BinaryProtocol.RESULT_ANSWER:
+                        answerLatency.record(latency);
+                        answered++;
+                        if (answered >= questions) {
+                            sendEvent(BinaryProtocol.QUIT , AWAIT_QUIT);
+                        } else if (room != null) {
+                            state = AWAIT_QUIZ;
+                        } else {
+                            sendEvent(BinaryProtocol.NEXT_QUIZ , AWAIT_QUIZ);
+                        }
+                        break;
+                    case BinaryProtocol.ERROR:
+                        // E.g. the question bank ran out, stop playing
+                        errors.increment();
+                        if (state != AWAIT_QUIT) sendEvent(BinaryProtocol.QUIT , AWAIT_QUIT);
+                        break;
+                    case BinaryProtocol.QUIT:
+                        quitLatency.record(latency);
+                        done();
+                        break;
+                }
+            }
+
+            // Method to join the room
+            private void joinRoom() throws IOException {
+                byte[] message = binary
+                        ? BinaryProtocol.frame(BinaryProtocol.JOIN_ROOM , room)
+                        : ("JOIN_ROOM;;" + room + "\n").getBytes(StandardCharsets.UTF_8);
+                send(message , message.length , AWAIT_JOIN);
+            }
+
+            // Method to answer the current question
+            void answer() throws IOException {
+                byte letter = answers != null
+                        ? (byte) answers.charAt(answered % answers.length())
+                        : (byte) ('A' + ThreadLocalRandom.current().nextInt(4));
+                int length;
+                if (binary) {
+                    byte[] frame = BinaryProtocol.frame(BinaryProtocol.ANSWER_QUIZ , String.valueOf((char) letter));
+                    System.arraycopy(frame , 0 , out , 0 , frame.length);
+                    length = frame.length;
+                } else {
+                    length = TextProtocol.writeEvent(out , 0 , BinaryProtocol.ANSWER_QUIZ);
+                    out[length++] = letter;
+                    out[length++] = '\n';
+                }
+                send(out , length , AWAIT_RESULT);
+            }
+
+            // Method to send an event without content
+            private void sendEvent(byte opcode , int nextState) throws IOException {
+                int length;
+                if (binary) {
+                    byte[] frame = BinaryProtocol.frame(opcode);
+                    System.arraycopy(frame , 0 , out , 0 , frame.length);
+                    length = frame.length;
+                } else {
+                    length = TextProtocol.writeEvent(out , 0 , opcode);
+                    out[length++] = 't';
+                    out[length++] = 'r';
+                    out[length++] = 'u';
+                    out[length++] = 'e';
+                    out[length++] = '\n';
+                }
+                send(out , length , nextState);
+            }
+
+            // Method to write a message and start timing the reply
+            private void send(byte[] array , int length , int nextState) throws IOException {
+                state = nextState;
+                messagesSent.increment();
+                sentAt = System.nanoTime();
+                ByteBuffer buffer = ByteBuffer.wrap(array , 0 , length);
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    // Keep the rest until the socket is writable again
+                    pendingOut = ByteBuffer.allocate(buffer.remaining()).put(buffer);
+                    pendingOut.flip();
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            }
+
+            // Method to write the bytes the socket did not accept earlier
+            void flush() throws IOException {
+                if (pendingOut == null) return;
+                channel.write(pendingOut);
+                if (!pendingOut.hasRemaining()) {
+                    pendingOut = null;
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+
+            // Method to finish the player after a clean quit
+            private void done() {
+                close();
+            }
+
+            // Method to finish the player after a failure
+            void fail() {
+                if (state == DONE) return;
+                if (state == CONNECTING) pendingConnects--;
+                failures.increment();
+                close();
+            }
+
+            private void close() {
+                if (state == DONE) return;
+                state = DONE;
+                remaining--;
+                try {
+                    if (channel != null) channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package game;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.management.ObjectName;
+
+// Asynchronous server log with levels.
+// Callers only claim a slot in a fixed ring buffer (one CAS, no lock) and store the format and its arguments;
+// a background writer formats the events and prints them to the console in batches.
+// When the ring is full events are dropped and counted instead of blocking the caller.
+// Per-message events are logged at TRACE, so with the default INFO level the message path skips them entirely.
+// The level can be changed at runtime through JMX (game:type=Log).
+public final class Log {
+
+    public enum Level { TRACE , DEBUG , INFO , WARN , ERROR }
+
+    private static final int CAPACITY = 1 << 14; // Slots in the ring, a power of two
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // Writer sleep when the ring is empty
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(50); // Longest sleep, reached while the log stays quiet
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    // One logged event, reused once the writer has printed it
+    private static final class Slot {
+        volatile long sequence = -1; // Sequence of the event stored here, published last
+        Level level;
+        long millis;
+        String thread;
+        String format;
+        Object[] args;
+        Throwable error;
+    }
+
+    private static final Slot[] ring = new Slot[CAPACITY];
+    private static final AtomicLong tail = new AtomicLong(); // Next sequence to claim
+    private static volatile long head; // Next sequence the writer prints
+    private static final LongAdder dropped = new LongAdder(); // Events lost because the ring was full
+
+    private static volatile Level level = Level.INFO; // Lowest level that is logged
+    private static volatile boolean closing; // Set at shutdown, the writer drains the ring and stops
+    private static final PrintStream console = System.out;
+    private static final Thread writer;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) ring[i] = new Slot();
+        writer = new Thread(Log::drain , "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        // Print what is still queued when the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            closing = true;
+            LockSupport.unpark(writer);
+            try {
+                writer.join(1_000);
+            } catch (InterruptedException ignored) {
+            }
+        }));
+    }
+
+    // Runtime control of the log, registered with the platform MBean server
+    public interface ControlMXBean {
+        String getLevel();
+
+        void setLevel(String level);
+
+        long getDropped();
+    }
+
+    private Log() {
+    }
+
+    // Static method to change the lowest level that is logged
+    public static void setLevel(Level lowest) {
+        level = lowest;
+    }
+
+    // Static method to check if events of a level are logged, to skip building their arguments
+    public static boolean isEnabled(Level wanted) {
+        return wanted.ordinal() >= level.ordinal();
+    }
+
+    // Static method to check if per-message tracing is on
+    public static boolean isTraceEnabled() {
+        return level == Level.TRACE;
+    }
+
+    // Static method to expose the log level through JMX
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new ControlMXBean() {
+                @Override
+                public String getLevel() {
+                    return level.name();
+                }
+
+                @Override
+                public void setLevel(String name) {
+                    Log.setLevel(Level.valueOf(name.trim().toUpperCase()));
+                }
+
+                @Override
+                public long getDropped() {
+                    return droppedEvents();
+                }
+            } , new ObjectName("game:type=Log"));
+        } catch (Exception e) {
+            warn("Fail to register the log MBean: %s" , e.getMessage());
+        }
+    }
+
+    // Static method to get the number of events dropped because the ring was full
+    public static long droppedEvents() {
+        return dropped.sum();
+    }
+
+    public static void trace(String format , Object... args) {
+        log(Level.TRACE , null , format , args);
+    }
+
+    public static void debug(String format , Object... args) {
+        log(Level.DEBUG , null , format , args);
+    }
+
+    public static void info(String format , Object... args) {
+        log(Level.INFO , null , format , args);
+    }
+
+    public static void warn(String format , Object... args) {
+        log(Level.WARN , null , format , args);
+    }
+
+    public static void error(Throwable error , String format , Object... args) {
+        log(Level.ERROR , error , format , args);
+    }
+
+    // Static method to queue an event for the writer; never blocks
+    private static void log(Level eventLevel , Throwable error , String format , Object[] args) {
+        if (!isEnabled(eventLevel)) return;
+
+        // Claim the next free slot, unless the writer is a whole ring behind
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= CAPACITY) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence , sequence + 1));
+
+        Slot slot = ring[(int) (sequence & MASK)];
+        slot.level = eventLevel;
+        slot.millis = System.currentTimeMillis();
+        slot.thread = Thread.currentThread().getName();
+        slot.format = format;
+        slot.args = args;
+        slot.error = error;
+        slot.sequence = sequence; // Publish the event to the writer
+    }
+
+    // Writer loop: print every published event, one console write per batch
+    private static void drain() {
+        StringBuilder batch = new StringBuilder(8 * 1024);
+        long reportedDrops = 0;
+        long idle = IDLE_NANOS;
+        while (true) {
+            long next = head;
+            Slot slot;
+            while ((slot = ring[(int) (next & MASK)]).sequence == next) {
+                append(batch , slot);
+                slot.args = null;
+                slot.error = null;
+                next++;
+                if ((next & 255) == 0) head = next; // Free slots during long batches
+            }
+            head = next;
+
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                batch.append(String.format("%s WARN  [log-writer] %d log events dropped\n" ,
+                        LocalTime.now().format(TIME) , drops - reportedDrops));
+                reportedDrops = drops;
+            }
+
+            if (batch.length() > 0) {
+                console.print(batch);
+                console.flush();
+                batch.setLength(0);
+                idle = IDLE_NANOS;
+            } else if (closing) {
+                return;
+            } else {
+                // Back off while nothing is logged, so an idle server is not woken up a thousand times a second
+                LockSupport.parkNanos(idle);
+                idle = Math.min(idle * 2 , MAX_IDLE_NANOS);
+            }
+        }
+    }
+
+    // Method to format one event as "time LEVEL [thread] message"
+    private static void append(StringBuilder batch , Slot slot) {
+        batch.append(LocalTime.ofInstant(Instant.ofEpochMilli(slot.millis) , ZoneId.systemDefault()).format(TIME))
+                .append(' ').append(String.format("%-5s" , slot.level))
+                .append(" [").append(slot.thread).append("] ");
+        try {
+            batch.append(slot.args == null || slot.args.length == 0 ? slot.format : String.format(slot.format , slot.args));
+        } catch (RuntimeException e) {
+            batch.append(slot.format);
+        }
+        batch.append('\n');
+        if (slot.error != null) {
+            StringWriter trace = new StringWriter();
+            slot.error.printStackTrace(new PrintWriter(trace));
+            batch.append(trace);
+        }
+    }
+}
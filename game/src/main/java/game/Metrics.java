@@ -0,0 +1,208 @@
+package game;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Server-wide counters and histograms, cheap enough to bump on every message from any thread:
+// counters are striped LongAdders and histograms are lock-free, so recording never takes a lock.
+// MetricsEndpoint serves them over HTTP and DispatchEvent adds per-message JFR events.
+public final class Metrics {
+
+    private static final LongAdder connectionsAccepted = new LongAdder(); // Connections accepted by any transport
+    private static final LongAdder connectionsRejected = new LongAdder(); // Connections turned away because the server was full
+    private static final LongAdder acceptFailures = new LongAdder(); // Failed accept calls, e.g. out of file descriptors
+    private static final LongAdder rateLimited = new LongAdder(); // Messages dropped by a session's rate limit
+    private static final LongAdder slowConsumers = new LongAdder(); // Clients dropped for not reading their replies
+    private static final LongAdder messagesWritten = new LongAdder(); // Messages handed to a connection
+    private static final LongAdder writeSyscalls = new LongAdder(); // Socket writes issued for them
+    private static final LongAdder bytesRead = new LongAdder(); // Bytes received from clients
+    private static final LongAdder bytesWritten = new LongAdder(); // Bytes sent to clients
+    private static final LongAdder errors = new LongAdder(); // Messages answered with ERROR
+    private static final LongAdder[] received = new LongAdder[BinaryProtocol.MAX_OPCODE + 1]; // Messages per opcode
+    private static final LatencyHistogram[] dispatch = new LatencyHistogram[BinaryProtocol.MAX_OPCODE + 1]; // Sampled handling time per opcode
+    private static final LatencyHistogram answerTimes = new LatencyHistogram(); // QUIZ sent to ANSWER_QUIZ read
+    private static final LatencyHistogram answerQueueing = new LatencyHistogram(); // ANSWER_QUIZ read to handled
+
+    private static volatile boolean jfrEvents; // Whether each handled message is also emitted as a JFR event
+
+    static {
+        for (int i = 0; i <= BinaryProtocol.MAX_OPCODE; i++) {
+            received[i] = new LongAdder();
+            dispatch[i] = new LatencyHistogram();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    // Static method to turn the per-message JFR events on or off
+    public static void useJfrEvents(boolean enabled) {
+        jfrEvents = enabled;
+    }
+
+    // Static method to check if handled messages are emitted as JFR events
+    public static boolean isJfrEnabled() {
+        return jfrEvents;
+    }
+
+    // Static method to count an accepted connection
+    public static void connectionAccepted() {
+        connectionsAccepted.increment();
+    }
+
+    // Static method to count a connection turned away by admission control
+    public static void connectionRejected() {
+        connectionsRejected.increment();
+    }
+
+    // Static method to count a failed accept call
+    public static void acceptFailed() {
+        acceptFailures.increment();
+    }
+
+    // Static method to count a message dropped by a rate limit
+    public static void rateLimited() {
+        rateLimited.increment();
+    }
+
+    // Static method to count a client dropped because its unsent replies hit the limit
+    public static void slowConsumer() {
+        slowConsumers.increment();
+    }
+
+    // Static method to count bytes received from a client
+    public static void bytesRead(int bytes) {
+        bytesRead.add(bytes);
+    }
+
+    // Static method to count a handled message; unknown opcodes count as 0
+    public static void dispatched(int opcode) {
+        received[index(opcode)].increment();
+    }
+
+    // Static method to record how long handling a sampled message took
+    public static void dispatchTime(int opcode , long nanos) {
+        dispatch[index(opcode)].record(nanos);
+    }
+
+    private static int index(int opcode) {
+        return opcode > 0 && opcode <= BinaryProtocol.MAX_OPCODE ? opcode : TextProtocol.UNKNOWN;
+    }
+
+    // Static method to count a message answered with ERROR
+    public static void error() {
+        errors.increment();
+    }
+
+    // Static method to count a message written to a client
+    public static void messageWritten() {
+        messagesWritten.increment();
+    }
+
+    // Static method to count a write system call on a client socket and the bytes it sent
+    public static void writeSyscall(int bytes) {
+        writeSyscalls.increment();
+        bytesWritten.add(bytes);
+    }
+
+    // Static method to record a timed answer: the player's time, network included, and the time it then waited in the server
+    public static void answerTimed(long answerNanos , long queuedNanos) {
+        answerTimes.record(answerNanos);
+        answerQueueing.record(queuedNanos);
+    }
+
+    public static LatencyHistogram answerTimes() {
+        return answerTimes;
+    }
+
+    public static LatencyHistogram answerQueueing() {
+        return answerQueueing;
+    }
+
+    public static long messagesWritten() {
+        return messagesWritten.sum();
+    }
+
+    public static long writeSyscalls() {
+        return writeSyscalls.sum();
+    }
+
+    public static long connectionsAccepted() {
+        return connectionsAccepted.sum();
+    }
+
+    public static long connectionsRejected() {
+        return connectionsRejected.sum();
+    }
+
+    public static long acceptFailures() {
+        return acceptFailures.sum();
+    }
+
+    public static long rateLimitedMessages() {
+        return rateLimited.sum();
+    }
+
+    public static long slowConsumers() {
+        return slowConsumers.sum();
+    }
+
+    public static long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    public static long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public static long errors() {
+        return errors.sum();
+    }
+
+    // Static method to get the number of messages handled for an opcode
+    public static long received(int opcode) {
+        return received[opcode].sum();
+    }
+
+    // Static method to get the sampled handling times of an opcode
+    public static LatencyHistogram dispatch(int opcode) {
+        return dispatch[opcode];
+    }
+
+    // Static method to log the write counters and answer times every period, when there was traffic.
+    // The answer times of every question are logged at DEBUG.
+    public static void startReporting(long periodSeconds) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task , "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] last = new long[3]; // Messages, syscalls and answers at the previous report
+        reporter.scheduleAtFixedRate(() -> {
+            long messages = messagesWritten();
+            long syscalls = writeSyscalls();
+            if (messages == last[0]) return;
+            Log.info("Writes: %d messages , %d syscalls , %.2f syscalls per message" ,
+                    messages - last[0] , syscalls - last[1] , (double) (syscalls - last[1]) / (messages - last[0]));
+            last[0] = messages;
+            last[1] = syscalls;
+
+            long answers = answerTimes.count();
+            if (answers == last[2]) return;
+            last[2] = answers;
+            Log.info("Answer time: %s" , answerTimes.summary());
+            Log.info("Answer queueing: %s" , answerQueueing.summary());
+            if (Log.isEnabled(Log.Level.DEBUG)) logQuestions(QuizCatalog.current());
+        } , periodSeconds , periodSeconds , TimeUnit.SECONDS);
+    }
+
+    // Static method to log the answer times of every answered question of a catalog whose answer times are tracked
+    private static void logQuestions(QuizCatalog catalog) {
+        for (int i = 0; i < catalog.trackedQuestions(); i++) {
+            LatencyHistogram histogram = catalog.answerTimes(i);
+            if (histogram != null) Log.debug("Question %d answer time: %s" , i + 1 , histogram.summary());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package game;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+// Tiny HTTP endpoint serving the server metrics in the Prometheus text format, for a local scraper to poll.
+// It binds to the loopback address only and renders the counters on request on its own thread,
+// so scraping never touches the I/O threads.
+public final class MetricsEndpoint {
+
+    private static final double[] PERCENTILES = {50 , 90 , 99 , 99.9};
+    private static final String[] QUANTILES = {"0.5" , "0.9" , "0.99" , "0.999"}; // Labels of the percentiles
+
+    private MetricsEndpoint() {
+    }
+
+    // Static method to serve GET /metrics on a loopback port
+    public static void start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress() , port) , 0);
+        server.createContext("/metrics" , MetricsEndpoint::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task , "metrics-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        Log.info("Metrics served on: http://localhost:%d/metrics" , port);
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405 , -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type" , "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200 , body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    // Static method to render every metric as Prometheus text
+    static String render() {
+        StringBuilder text = new StringBuilder(8 * 1024);
+        counter(text , "game_connections_accepted_total" , "Connections accepted" , Metrics.connectionsAccepted());
+        counter(text , "game_connections_rejected_total" , "Connections turned away because the server was full" , Metrics.connectionsRejected());
+        counter(text , "game_accept_failures_total" , "Failed accept calls" , Metrics.acceptFailures());
+        gauge(text , "game_connections_open" , "Admitted connections not closed yet" , Admission.open());
+        gauge(text , "game_sessions_active" , "Connected sessions" , ClientManager.activeSessions());
+        gauge(text , "game_sessions_parked" , "Disconnected sessions kept for resuming" , ClientManager.parkedSessions());
+        gauge(text , "game_leaderboard_players" , "Players on the leaderboard" , Leaderboard.global().size());
+        counter(text , "game_bytes_read_total" , "Bytes received from clients" , Metrics.bytesRead());
+        counter(text , "game_bytes_written_total" , "Bytes sent to clients" , Metrics.bytesWritten());
+        counter(text , "game_messages_written_total" , "Messages sent to clients" , Metrics.messagesWritten());
+        counter(text , "game_write_syscalls_total" , "Socket writes issued" , Metrics.writeSyscalls());
+        counter(text , "game_errors_total" , "Client messages answered with ERROR" , Metrics.errors());
+        counter(text , "game_rate_limited_total" , "Client messages dropped by the per-session rate limit" , Metrics.rateLimitedMessages());
+        counter(text , "game_slow_consumers_total" , "Clients dropped for not reading their replies" , Metrics.slowConsumers());
+        counter(text , "game_log_dropped_total" , "Log events dropped because the log ring was full" , Log.droppedEvents());
+
+        // Messages and handling time per event type
+        header(text , "game_messages_received_total" , "Client messages handled" , "counter");
+        for (int opcode = 0; opcode <= BinaryProtocol.MAX_OPCODE; opcode++) {
+            long count = Metrics.received(opcode);
+            if (count == 0) continue;
+            text.append("game_messages_received_total{event=\"").append(TextProtocol.eventName(opcode)).append("\"} ")
+                    .append(count).append('\n');
+        }
+        header(text , "game_dispatch_seconds" , "Time to handle a client message, one in 16 per session" , "summary");
+        for (int opcode = 0; opcode <= BinaryProtocol.MAX_OPCODE; opcode++) {
+            LatencyHistogram histogram = Metrics.dispatch(opcode);
+            if (histogram.count() == 0) continue;
+            summary(text , "game_dispatch_seconds" , "event=\"" + TextProtocol.eventName(opcode) + "\"," , histogram);
+        }
+
+        header(text , "game_answer_seconds" , "Time from sending a question to reading its answer" , "summary");
+        summary(text , "game_answer_seconds" , "" , Metrics.answerTimes());
+        header(text , "game_answer_queueing_seconds" , "Time an answer waited in the server after it was read" , "summary");
+        summary(text , "game_answer_queueing_seconds" , "" , Metrics.answerQueueing());
+        return text.toString();
+    }
+
+    private static void header(StringBuilder text , String name , String help , String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder text , String name , String help , long value) {
+        header(text , name , help , "counter");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder text , String name , String help , long value) {
+        header(text , name , help , "gauge");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    // Method to write a histogram as quantiles, count and sum in seconds; labels end with a comma when present
+    private static void summary(StringBuilder text , String name , String labels , LatencyHistogram histogram) {
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            text.append(name).append("{").append(labels).append("quantile=\"").append(QUANTILES[i]).append("\"} ")
+                    .append(seconds(histogram.percentile(PERCENTILES[i]))).append('\n');
+        }
+        String plain = labels.isEmpty() ? "" : "{" + labels.substring(0 , labels.length() - 1) + "}";
+        long count = histogram.count();
+        text.append(name).append("_count").append(plain).append(' ').append(count).append('\n');
+        text.append(name).append("_sum").append(plain).append(' ').append(seconds(histogram.mean() * count)).append('\n');
+    }
+
+    private static String seconds(double nanos) {
+        return String.format("%.9f" , nanos / 1e9);
+    }
+}
@@ -0,0 +1,365 @@
+package game;
+
+import javax.net.ssl.SSLEngine;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Non-blocking Connection owned by an EventLoop.
+// Frames incoming bytes into EVENT;;payload lines (or binary frames, if the client negotiated them)
+// and feeds them to the session's message handlers.
+// Replies are not written straight away: they are appended to a per-session staging buffer and the loop
+// flushes every session that has output once per tick, so e.g. RESULT_ANSWER followed by the next QUIZ
+// leaves in a single write.
+// When the server uses TLS the bytes go through a TlsChannel, which decrypts reads and encrypts flushes.
+public class NioConnection implements Connection {
+
+    // Longest line or frame (plus its length prefix) accepted before the client is dropped
+    private static final int MAX_MESSAGE_LENGTH = BinaryProtocol.MAX_FRAME_LENGTH + 8;
+    private static final int PARTIAL_SIZE = 256; // Initial size of the partial message buffer
+
+    private final EventLoop loop; // The loop that owns this connection
+    private final SocketChannel channel; // The client's channel
+    private final TlsChannel tls; // Encryption of the channel, null for plaintext
+    // Smallest staging buffer, kept across ticks so steady traffic does not allocate
+    private static final int STAGING_SIZE = 512;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0); // Flushed when only TLS records are unsent
+
+    private final Queue<ByteBuffer> inbox = new ConcurrentLinkedQueue<>(); // Messages written from other threads
+    private final AtomicBoolean inboxScheduled = new AtomicBoolean(); // Whether the loop will drain the inbox
+    private final Runnable drainInbox = this::drainInbox; // Reused task, so cross-thread writes do not allocate one
+    private ByteBuffer staging; // Output not written yet (write mode), only touched on the loop thread
+    private boolean flushScheduled; // Whether the loop will flush this connection at the end of the tick
+    private boolean writeBlocked; // Whether the socket buffer is full and the loop waits for OP_WRITE
+    private SelectionKey key; // Registration of the channel with the loop's selector
+    private ClientManager clientManager; // Session driven by this connection
+    private ByteBuffer partial; // Incomplete message carried over between reads, allocated only when needed
+    private final int[] frameLength = new int[1]; // Body length of the last frame found by BinaryProtocol.findFrame
+    private boolean negotiated; // Whether the first byte has been seen
+    private boolean binary; // Whether the client negotiated the binary protocol
+    private long receivedAt; // System.nanoTime() of the last read, only touched on the loop thread
+    // Set once close starts, so neither a failing final flush nor a close from another thread (idle eviction,
+    // a cluster node going down) closes again and releases the admission slot twice
+    private final AtomicBoolean closing = new AtomicBoolean();
+
+    public NioConnection(EventLoop loop , SocketChannel channel) {
+        this.loop = loop;
+        this.channel = channel;
+        SSLEngine engine = Tls.newEngine();
+        // The handshake threads hand the connection back to its loop once they are done
+        this.tls = engine == null ? null : new TlsChannel(channel , engine , () -> loop.execute(this::onHandshakeTask));
+    }
+
+    // Method to bind the connection to its selection key and start the session
+    void open(SelectionKey key) {
+        this.key = key;
+        this.clientManager = ClientManager.attach(this);
+    }
+
+    // Method called by the loop when the channel has bytes to read
+    void onReadable(ByteBuffer buffer) {
+        try {
+            if (tls != null) {
+                readTls(buffer);
+                return;
+            }
+            buffer.clear();
+            int read = channel.read(buffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            receivedAt = System.nanoTime();
+            Metrics.bytesRead(read);
+            buffer.flip();
+            frame(buffer);
+        } catch (IOException e) {
+            closeQuietly();
+        }
+    }
+
+    // Method to decrypt and frame everything received, as far as the handshake allows
+    private void readTls(ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear();
+            int read = tls.read(buffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            if (read == 0) break;
+            receivedAt = System.nanoTime();
+            buffer.flip();
+            frame(buffer);
+            if (!channel.isOpen()) return;
+        }
+        // Send the handshake's records, and the replies staged before it was done
+        if (tls.hasUnsent() || staging != null && staging.position() > 0) flushLater();
+    }
+
+    // Method called on the loop once the handshake threads ran the delegated tasks, to carry on the handshake
+    private void onHandshakeTask() {
+        tls.taskDone();
+        if (channel.isOpen()) onReadable(loop.readBuffer());
+    }
+
+    // Method to split the buffer into messages, keeping any trailing partial message for the next read
+    private void frame(ByteBuffer buffer) throws IOException {
+        byte[] array = buffer.array();
+        int position = buffer.position();
+        int limit = buffer.limit();
+
+        if (!negotiated && position < limit) {
+            // The very first byte tells whether the client wants the binary protocol
+            negotiated = true;
+            if ((array[position] & 0xFF) == BinaryProtocol.MAGIC) {
+                binary = true;
+                position++;
+            }
+        }
+
+        if (partial != null && partial.position() > 0) {
+            // Complete the pending message with only the bytes it lacks, then carry on in the read buffer
+            int needed = pendingLength(array , position , limit);
+            if (needed < 0) {
+                append(array , position , limit - position);
+                return;
+            }
+            append(array , position , needed);
+            parse(partial.array() , 0 , partial.position());
+            position += needed;
+            // Give back a buffer that grew for a long message
+            if (partial.capacity() > PARTIAL_SIZE) {
+                partial = null;
+            } else {
+                partial.clear();
+            }
+        }
+
+        int consumed = parse(array , position , limit);
+        // Keep the rest until more bytes arrive
+        if (consumed < limit && channel.isOpen()) append(array , consumed , limit - consumed);
+    }
+
+    // Method to get how many bytes of a range complete the pending message, or -1 if the range does not complete it
+    private int pendingLength(byte[] array , int from , int to) throws IOException {
+        int pending = partial.position();
+        if (!binary) {
+            int end = indexOf(array , from , to , (byte) '\n');
+            return end < 0 ? -1 : end + 1 - from;
+        }
+        // The frame length prefix may itself be split between the pending bytes and the range
+        byte[] head = partial.array();
+        long value = 0;
+        for (int i = 0, shift = 0; shift < 35; i++, shift += 7) {
+            int at = i < pending ? i : from + i - pending;
+            if (at >= to) return -1;
+            byte b = i < pending ? head[i] : array[at];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 1 || value > BinaryProtocol.MAX_FRAME_LENGTH) throw new IOException("Invalid frame length: " + value);
+                long needed = i + 1 + value - pending;
+                return needed <= to - from ? (int) needed : -1;
+            }
+        }
+        throw new IOException("Malformed frame length");
+    }
+
+    // Method to dispatch every complete message in a byte range, returning the offset after the last one
+    private int parse(byte[] array , int from , int to) throws IOException {
+        int position = from;
+        while (position < to && channel.isOpen()) {
+            if (binary) {
+                final int body;
+                try {
+                    body = BinaryProtocol.findFrame(array , position , to , frameLength);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage());
+                }
+                if (body < 0) break;
+                clientManager.binaryMessageHandler(array , body , frameLength[0]);
+                position = body + frameLength[0];
+            } else {
+                int end = indexOf(array , position , to , (byte) '\n');
+                if (end < 0) break;
+                dispatch(array , position , end - position);
+                position = end + 1;
+            }
+        }
+        return position;
+    }
+
+    // Method to decode a single line and hand it to the session
+    private void dispatch(byte[] array , int offset , int length) {
+        // Accept both \n and \r\n line endings
+        if (length > 0 && array[offset + length - 1] == '\r') length--;
+        clientManager.messageHandler(array , offset , length);
+    }
+
+    // Method to buffer the bytes of a message that is not complete yet
+    private void append(byte[] array , int offset , int length) throws IOException {
+        if (partial == null) partial = ByteBuffer.allocate(Math.max(PARTIAL_SIZE , length));
+        if (partial.position() + length > MAX_MESSAGE_LENGTH) {
+            throw new IOException("Message too long");
+        }
+        if (partial.remaining() < length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(partial.capacity() * 2 , partial.position() + length));
+            partial.flip();
+            grown.put(partial);
+            partial = grown;
+        }
+        partial.put(array , offset , length);
+    }
+
+    private static int indexOf(byte[] array , int from , int to , byte value) {
+        for (int i = from; i < to; i++) {
+            if (array[i] == value) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isBinary() {
+        return binary;
+    }
+
+    @Override
+    public void write(String line) {
+        write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void write(byte[] line) {
+        if (loop.inEventLoop()) {
+            stage(line , 0 , line.length);
+            return;
+        }
+        // Each wrapper has its own position, so shared arrays can be queued on many connections
+        inbox.add(ByteBuffer.wrap(line));
+        if (inboxScheduled.compareAndSet(false , true)) loop.execute(drainInbox);
+    }
+
+    @Override
+    public void write(byte[] array , int offset , int length) {
+        if (loop.inEventLoop()) {
+            stage(array , offset , length);
+            return;
+        }
+        // Keep a private copy, the caller may reuse its array as soon as we return
+        byte[] copy = new byte[length];
+        System.arraycopy(array , offset , copy , 0 , length);
+        write(copy);
+    }
+
+    // Method to append a message to the staging buffer and have the loop flush it at the end of the tick
+    private void stage(byte[] array , int offset , int length) {
+        if (!channel.isOpen()) return;
+        if (staging != null && staging.position() + length > Admission.maxOutboundBytes()) {
+            // The client stopped reading: drop it rather than buffer without bound
+            Metrics.slowConsumer();
+            Log.debug("Dropping slow client %s with %d bytes unsent" , channel , staging.position());
+            closeQuietly();
+            return;
+        }
+        if (staging == null) staging = ByteBuffer.allocate(Math.max(STAGING_SIZE , length));
+        if (staging.remaining() < length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(staging.capacity() * 2 , staging.position() + length));
+            staging.flip();
+            grown.put(staging);
+            staging = grown;
+        }
+        staging.put(array , offset , length);
+        Metrics.messageWritten();
+        flushLater();
+    }
+
+    // Method to have the loop flush this connection at the end of the tick, unless it waits for OP_WRITE
+    private void flushLater() {
+        if (!flushScheduled && !writeBlocked) {
+            flushScheduled = true;
+            loop.flushLater(this);
+        }
+    }
+
+    // Method to move the messages written from other threads into the staging buffer, on the loop thread
+    private void drainInbox() {
+        inboxScheduled.set(false);
+        ByteBuffer message;
+        while ((message = inbox.poll()) != null) {
+            stage(message.array() , message.position() , message.remaining());
+        }
+    }
+
+    @Override
+    public long receivedAt() {
+        return receivedAt;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        loop.execute(task);
+    }
+
+    // Method to write as much of the staging buffer as the socket accepts without blocking.
+    // Called by the loop at the end of a tick, and again when the socket becomes writable.
+    void flush() {
+        flushScheduled = false;
+        boolean staged = staging != null && staging.position() > 0;
+        if (!staged && (tls == null || !tls.hasUnsent()) || !channel.isOpen()) return;
+        try {
+            boolean blocked;
+            if (tls == null) {
+                staging.flip();
+                Metrics.writeSyscall(channel.write(staging));
+                blocked = staging.hasRemaining();
+                staging.compact();
+            } else {
+                // Staged bytes stay while the handshake is not done, the end of the handshake flushes them
+                if (staged) staging.flip();
+                tls.write(staged ? staging : EMPTY);
+                if (staged) staging.compact();
+                blocked = tls.hasUnsent();
+            }
+
+            if (blocked != writeBlocked) {
+                // Socket buffer is full: wait until the selector reports it writable again
+                writeBlocked = blocked;
+                key.interestOps(blocked ? key.interestOps() | SelectionKey.OP_WRITE : key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+            // Give back buffers that grew for a burst
+            if (staging != null && staging.position() == 0 && staging.capacity() > STAGING_SIZE * 8) staging = null;
+        } catch (IOException e) {
+            closeQuietly();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen() || !closing.compareAndSet(false , true)) return;
+        // Send what is still staged, e.g. the reply to QUIT
+        if (loop.inEventLoop()) {
+            flush();
+            if (tls != null) tls.close();
+        }
+        channel.close();
+        Admission.release();
+        if (clientManager != null) clientManager.onClose();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ignored) {
+        }
+    }
+}
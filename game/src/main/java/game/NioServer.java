@@ -0,0 +1,86 @@
+package game;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+// Non-blocking server mode: a small fixed set of EventLoops serves every client,
+// instead of two threads per connection like the blocking Server.
+// With one acceptor the first loop accepts and deals the connections out round-robin. With several,
+// each acceptor is a SO_REUSEPORT channel on its own loop and keeps the connections the kernel gives it.
+public class NioServer {
+
+    private final InetSocketAddress address; // Address to listen on, port 0 for any free port
+    private final int backlog; // Connections queued per channel before they are accepted
+    private final int acceptors; // Listening channels, each on its own loop
+    private final EventLoop[] loops; // I/O event loops, the first ones also accept connections
+    private int next = 0; // Round-robin index of the loop that gets the next connection
+    private List<ServerSocketChannel> serverChannels; // Channels accepting new connections
+
+    public NioServer(int port , int ioThreads) throws IOException {
+        this(new InetSocketAddress(port) , Listeners.DEFAULT_BACKLOG , ioThreads , 1);
+    }
+
+    public NioServer(InetSocketAddress address , int backlog , int ioThreads , int acceptors) throws IOException {
+        this.address = address;
+        this.backlog = backlog;
+        this.acceptors = Math.min(Listeners.usableAcceptors(acceptors) , ioThreads);
+        this.loops = new EventLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            loops[i] = new EventLoop("nio-loop-" + i);
+        }
+    }
+
+    // Method to bind the server channel and start the event loops
+    public void start() throws IOException {
+        serverChannels = Listeners.openChannels(address , backlog , acceptors);
+
+        for (EventLoop loop : loops) {
+            loop.start();
+        }
+        if (acceptors == 1) {
+            loops[0].registerAcceptor(serverChannels.get(0) , this::onAccept);
+        } else {
+            for (int i = 0; i < acceptors; i++) {
+                EventLoop loop = loops[i];
+                loop.registerAcceptor(serverChannels.get(i) , channel -> onAccept(channel , loop));
+            }
+        }
+        Log.info("Server (nio, %d loops, %d acceptors) run on: %s:%d" ,
+                loops.length , acceptors , address.getHostString() , localPort());
+    }
+
+    // Method to get the port the server is bound to
+    public int localPort() throws IOException {
+        return ((InetSocketAddress) serverChannels.get(0).getLocalAddress()).getPort();
+    }
+
+    // Method to stop accepting, close every connection and stop the event loops
+    public void stop() throws IOException {
+        for (ServerSocketChannel serverChannel : serverChannels) {
+            serverChannel.close();
+        }
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+    }
+
+    // Method to spread accepted connections across the event loops
+    private void onAccept(SocketChannel channel) {
+        EventLoop loop = loops[next];
+        next = (next + 1) % loops.length;
+        onAccept(channel , loop);
+    }
+
+    // Method to serve an accepted connection on the given loop, e.g. the one whose acceptor took it
+    private void onAccept(SocketChannel channel , EventLoop loop) {
+        if (!Admission.tryAdmit()) {
+            Admission.reject(channel);
+            return;
+        }
+        Log.debug("New client connection: %s" , channel);
+        loop.register(channel);
+    }
+}
@@ -1,3 +1,5 @@
+package game;
+
 public class Participant {
 
     public int Points; // Public field to hold the participant's points
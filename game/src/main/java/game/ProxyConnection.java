@@ -0,0 +1,86 @@
+package game;
+
+import java.nio.charset.StandardCharsets;
+
+// Connection of a stand-in session for a player connected to another node of the cluster.
+// The room owning node plays the player through this stand-in: what the room writes is passed to the
+// player's home node, which writes it to the real connection, and points, rank pushes and the end of the
+// room are reported to the home node, which keeps the player's score, leaderboard entry and journal.
+final class ProxyConnection implements Connection {
+
+    private final ClusterPeer home; // Link to the node the player is connected to
+    private final long clientId; // Client ID of the player, unique across the cluster
+    private final boolean binary; // Protocol of the player's real connection
+    private volatile boolean open = true; // Cleared once the player leaves the room
+
+    ProxyConnection(ClusterPeer home , long clientId , boolean binary) {
+        this.home = home;
+        this.clientId = clientId;
+        this.binary = binary;
+    }
+
+    // Method to get the link to the player's home node
+    ClusterPeer home() {
+        return home;
+    }
+
+    @Override
+    public boolean isBinary() {
+        return binary;
+    }
+
+    @Override
+    public void write(String line) {
+        write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void write(byte[] line) {
+        write(line , 0 , line.length);
+    }
+
+    @Override
+    public void write(byte[] array , int offset , int length) {
+        // Copied into the batch of the home node right away
+        if (open) home.deliver(clientId , array , offset , length);
+    }
+
+    // Method to give the player the points it won in the room
+    void points(int points) {
+        home.points(clientId , points);
+    }
+
+    // Method to have the home node push the player's rank
+    void pushRank() {
+        home.rank(clientId);
+    }
+
+    // Method to tell the home node the player is out of the room
+    void left(String message) {
+        open = false;
+        Cluster.dropProxy(clientId);
+        home.left(clientId , message);
+    }
+
+    @Override
+    public long receivedAt() {
+        // Forwarded answers carry the time measured by the home node, see ClientManager.answerForwarded
+        return System.nanoTime();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        // Nothing to wait for, every write only queues bytes for the next cluster tick
+        task.run();
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+}
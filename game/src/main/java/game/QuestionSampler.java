@@ -0,0 +1,134 @@
+package game;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Draws questions at random from a pool, the whole bank or the questions of one tag, without repeating one.
+// A draw is one step of a Fisher-Yates shuffle of the pool's positions: the undrawn positions are kept at the
+// end of a virtual permutation, a draw picks one of them uniformly and moves the first undrawn one into its
+// place. Every draw takes constant time and every question left is equally likely, however large the pool is.
+// Only the moved positions are stored: in a small open-addressing table of ints while there are few of them,
+// then in the whole permutation once that is smaller, so a player 50 questions into a million-question bank
+// costs a few hundred bytes, and nothing is boxed.
+// Not thread-safe: a sampler belongs to one session, or to one room.
+final class QuestionSampler {
+
+    private static final int MIN_TABLE = 16; // Initial table capacity, a power of two
+
+    private final IntBuffer pool; // Question IDs to draw from, or null for every question of the bank
+    private final int size; // Number of questions in the pool
+    private int drawn; // Positions drawn so far, the first drawn ones of the permutation
+    private int[] keys; // Moved positions plus 1 by open addressing, 0 in a free slot; null once order is used
+    private int[] values; // What each moved position of keys holds now
+    private int entries; // Moved positions in the table
+    private int[] order; // What every position holds now; null while the table is used
+
+    QuestionSampler(IntBuffer pool , int size) {
+        this.pool = pool;
+        this.size = size;
+        // The permutation of a small pool is smaller than the smallest table
+        if (MIN_TABLE * 2 >= size) {
+            useOrder();
+        } else {
+            keys = new int[MIN_TABLE];
+            values = new int[MIN_TABLE];
+        }
+    }
+
+    // Method to draw an unused question, or -1 once every question of the pool was drawn
+    int next() {
+        if (drawn >= size) return -1;
+        int pick = drawn + ThreadLocalRandom.current().nextInt(size - drawn);
+        int chosen = get(pick);
+        // The first undrawn position is retired, its question moves to the picked one
+        if (pick != drawn) put(pick , get(drawn));
+        drawn++;
+        return pool == null ? chosen : pool.get(chosen);
+    }
+
+    // Method to get the number of questions left to draw
+    int remaining() {
+        return size - drawn;
+    }
+
+    // Method to get the position a permutation slot holds now, itself unless it was moved
+    private int get(int slot) {
+        if (order != null) return order[slot];
+        int mask = keys.length - 1;
+        for (int i = hash(slot) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == slot + 1) return values[i];
+        }
+        return slot;
+    }
+
+    private void put(int slot , int position) {
+        if (order != null) {
+            order[slot] = position;
+            return;
+        }
+        int mask = keys.length - 1;
+        int i = hash(slot) & mask;
+        while (keys[i] != 0) {
+            if (keys[i] == slot + 1) {
+                values[i] = position;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        if ((entries + 1) * 2 > keys.length) {
+            // Past half full the table grows, unless the whole permutation is smaller by then
+            if (keys.length * 4L >= size) {
+                useOrder();
+                order[slot] = position;
+                return;
+            }
+            grow();
+            insert(slot + 1 , position);
+        } else {
+            keys[i] = slot + 1;
+            values[i] = position;
+        }
+        entries++;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) insert(oldKeys[i] , oldValues[i]);
+        }
+    }
+
+    private void insert(int key , int value) {
+        int mask = keys.length - 1;
+        int i = hash(key - 1) & mask;
+        while (keys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    // Method to move from the table to the whole permutation
+    private void useOrder() {
+        order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        if (keys != null) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) order[keys[i] - 1] = values[i];
+            }
+        }
+        keys = null;
+        values = null;
+    }
+
+    // Static method to spread the positions over the table, nearby positions are moved one after the other
+    private static int hash(int position) {
+        int h = position * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
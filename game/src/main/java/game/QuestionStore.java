@@ -0,0 +1,383 @@
+package game;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Question bank kept in one memory-mapped file, so a bank of millions of questions takes no heap: the OS pages
+// in the questions that are played and can drop them again, and loading a bank does not read it.
+// The store is built from a CSV catalog (java game.QuestionStore questions.csv questions.qbank, or by the server
+// when it is given a CSV) and holds, after a fixed header:
+// - the text of every question, as the QUIZ line and the binary QUIZ frame sent to players;
+// - the AnswerKeys record of every question;
+// - the text index: where the line and the frame of every question start and how long they are;
+// - the tag directory: for every tag, e.g. a category or a difficulty, the sorted IDs of its questions.
+// Question IDs are the order of the questions in the CSV, from 0. One mapping covers the whole file,
+// which limits a store to 2 GB, several million questions.
+final class QuestionStore {
+
+    private static final int MAGIC = 0x51424E4B; // "QBNK", first bytes of every store
+    private static final int VERSION = 1; // Layout version, bumped on any change to it
+    private static final int HEADER_SIZE = 32; // Magic, version, questions, tags, keys offset, tags offset, 8 unused
+    private static final int INDEX_SIZE = 12; // Bytes per question in the text index: offset, line length, frame length
+    private static final int MAX_WEIGHT = 100; // Largest points multiplier of a question
+    private static final int MAX_TAG_LENGTH = 64; // Longest tag name
+
+    private final ByteBuffer file; // The whole store, only read with absolute gets
+    private final int size; // Number of questions
+    private final AnswerKeys keys; // Answer keys, read from the mapped records
+    private final int indexOffset; // Start of the text index
+    private final Map<String, IntBuffer> tags; // Question IDs of every tag, views of the mapped file
+
+    private QuestionStore(Path path , ByteBuffer file) throws IOException {
+        if (file.limit() < HEADER_SIZE || file.getInt(0) != MAGIC) {
+            throw new IOException(String.format("%s: not a question store" , path));
+        }
+        if (file.getInt(4) != VERSION) {
+            throw new IOException(String.format("%s: question store version %d, expected %d" , path , file.getInt(4) , VERSION));
+        }
+        this.file = file;
+        this.size = file.getInt(8);
+        int tagCount = file.getInt(12);
+        int keysOffset = file.getInt(16);
+        int tagsOffset = file.getInt(20);
+        this.indexOffset = keysOffset + size * AnswerKeys.KEY_SIZE;
+        if (size < 1 || indexOffset + (long) size * INDEX_SIZE > tagsOffset || tagsOffset > file.limit()) {
+            throw new IOException(String.format("%s: truncated question store" , path));
+        }
+        this.keys = new AnswerKeys(file.slice(keysOffset , size * AnswerKeys.KEY_SIZE));
+
+        // The directory is small, one entry per tag; the IDs stay in the file
+        Map<String, IntBuffer> directory = new HashMap<>();
+        int position = tagsOffset;
+        for (int i = 0; i < tagCount; i++) {
+            int nameLength = file.getInt(position);
+            byte[] name = new byte[nameLength];
+            file.get(position + 4 , name);
+            position = align(position + 4 + nameLength , 4);
+            int count = file.getInt(position);
+            directory.put(new String(name , StandardCharsets.UTF_8) , file.slice(position + 4 , count * 4).asIntBuffer());
+            position += 4 + count * 4;
+        }
+        this.tags = Collections.unmodifiableMap(directory);
+    }
+
+    // Static method to map a store file
+    static QuestionStore open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path , StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s: question store larger than 2 GB" , path));
+            }
+            // The mapping stays valid once the channel is closed
+            return new QuestionStore(path , channel.map(FileChannel.MapMode.READ_ONLY , 0 , channel.size()));
+        }
+    }
+
+    // Static method to build a store from a CSV catalog in a temporary file and map it
+    static QuestionStore compile(Path csv) throws IOException {
+        Path temporary = Files.createTempFile("questions" , ".qbank");
+        try {
+            build(csv , temporary);
+            return open(temporary);
+        } finally {
+            try {
+                // Unlinking a mapped file keeps the mapping, where the platform allows it
+                Files.delete(temporary);
+            } catch (IOException e) {
+                temporary.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    // Static method to check if a file is a store rather than a CSV catalog
+    static boolean isStore(Path path) throws IOException {
+        try (InputStream input = Files.newInputStream(path)) {
+            byte[] magic = input.readNBytes(4);
+            return magic.length == 4 && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    // Method to get the number of questions
+    int size() {
+        return size;
+    }
+
+    // Method to get the answer keys of the questions
+    AnswerKeys keys() {
+        return keys;
+    }
+
+    // Method to get the IDs of the questions with a tag, in increasing order, or null for an unknown tag.
+    // The buffer is shared and must only be read with absolute gets.
+    IntBuffer tag(String name) {
+        return tags.get(name);
+    }
+
+    // Method to get the names of the tags
+    Set<String> tags() {
+        return tags.keySet();
+    }
+
+    // Method to get the length of the encoded QUIZ line, or binary frame, of a question
+    int quizLength(int question , boolean binary) {
+        return file.getInt(indexOffset + question * INDEX_SIZE + (binary ? 8 : 4));
+    }
+
+    // Method to copy the encoded QUIZ line, or binary frame, of a question into an array big enough for it
+    void copyQuiz(int question , boolean binary , byte[] destination) {
+        int entry = indexOffset + question * INDEX_SIZE;
+        int text = file.getInt(entry);
+        int lineLength = file.getInt(entry + 4);
+        if (binary) {
+            // The frame follows the line
+            file.get(text + lineLength , destination , 0 , file.getInt(entry + 8));
+        } else {
+            file.get(text , destination , 0 , lineLength);
+        }
+    }
+
+    // Static method to build a store from a CSV catalog, one question per line, returning the number of questions.
+    // The CSV is streamed: the text goes straight to the store and the keys and the index through temporary files,
+    // so building only keeps the tagged question IDs in memory.
+    static int build(Path csv , Path store) throws IOException {
+        Path keysFile = Files.createTempFile("keys" , ".tmp");
+        Path indexFile = Files.createTempFile("index" , ".tmp");
+        Map<String, TagIds> tagIds = new TreeMap<>();
+        int size = 0;
+        int keysOffset;
+        int tagsOffset;
+        try (BufferedReader reader = Files.newBufferedReader(csv , StandardCharsets.UTF_8);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(store) , 1 << 16));
+             DataOutputStream keys = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(keysFile) , 1 << 16));
+             DataOutputStream index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile) , 1 << 16))) {
+            // The header is written last, once the offsets are known
+            output.write(new byte[HEADER_SIZE]);
+            ByteBuffer key = ByteBuffer.allocate(AnswerKeys.KEY_SIZE);
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+
+                List<String> fields = splitCsv(line);
+                if (fields.size() < 2) {
+                    throw new IOException(String.format("%s:%d: expected question, answers and the correct answer" , csv , lineNumber));
+                }
+                String[] answers = fields.subList(1 , fields.size() - 1).toArray(new String[0]);
+                // The last field is the answer key, followed by the question's tags: "2*3|geography|easy"
+                String[] keyAndTags = fields.get(fields.size() - 1).split("\\|");
+                Quiz quiz;
+                try {
+                    quiz = parseQuiz(fields.get(0) , answers , keyAndTags[0].trim());
+                    for (int i = 1; i < keyAndTags.length; i++) {
+                        tagIds.computeIfAbsent(parseTag(keyAndTags[i]) , name -> new TagIds()).add(size);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(String.format("%s:%d: %s" , csv , lineNumber , e.getMessage()));
+                }
+
+                // Encode the QUIZ line, with newlines replaced by the special identifier, and the binary frame once
+                String text = quiz.toString();
+                byte[] quizLine = ("QUIZ;;" + text.replace("\n" , ";n;") + "\n").getBytes(StandardCharsets.UTF_8);
+                byte[] quizFrame = BinaryProtocol.frame(BinaryProtocol.QUIZ , text);
+                if (output.size() + quizLine.length + quizFrame.length > Integer.MAX_VALUE / 2) {
+                    throw new IOException(String.format("%s:%d: question bank too large for one store" , csv , lineNumber));
+                }
+                index.writeInt(output.size());
+                index.writeInt(quizLine.length);
+                index.writeInt(quizFrame.length);
+                output.write(quizLine);
+                output.write(quizFrame);
+                AnswerKeys.put(key.clear() , quiz);
+                keys.write(key.array());
+                size++;
+            }
+            if (size == 0) {
+                // Also guards against picking up a file that is still being written
+                throw new IOException(String.format("%s: no questions" , csv));
+            }
+
+            keys.flush();
+            index.flush();
+            pad(output , 8);
+            keysOffset = output.size();
+            Files.copy(keysFile , output);
+            Files.copy(indexFile , output);
+            pad(output , 4);
+            tagsOffset = output.size();
+            for (Map.Entry<String, TagIds> tag : tagIds.entrySet()) {
+                byte[] name = tag.getKey().getBytes(StandardCharsets.UTF_8);
+                output.writeInt(name.length);
+                output.write(name);
+                pad(output , 4);
+                TagIds ids = tag.getValue();
+                output.writeInt(ids.size);
+                for (int i = 0; i < ids.size; i++) {
+                    output.writeInt(ids.ids[i]);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(keysFile);
+            Files.deleteIfExists(indexFile);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(tagIds.size()).putInt(keysOffset).putInt(tagsOffset).flip();
+        try (FileChannel channel = FileChannel.open(store , StandardOpenOption.WRITE)) {
+            channel.write(header , 0);
+        }
+        return size;
+    }
+
+    // Static method to build a question from its answer key: the numbers of the correct answers joined with "+",
+    // or "=value" with an optional "~tolerance" for a numeric question, followed by an optional "*weight"
+    private static Quiz parseQuiz(String question , String[] answers , String key) {
+        int weight = 1;
+        int star = key.lastIndexOf('*');
+        if (star >= 0) {
+            weight = parseNumber(key.substring(star + 1) , "weight");
+            if (weight < 1 || weight > MAX_WEIGHT) {
+                throw new IllegalArgumentException("weight out of range");
+            }
+            key = key.substring(0 , star).trim();
+        }
+
+        if (key.startsWith("=")) {
+            if (answers.length > 0) {
+                throw new IllegalArgumentException("a numeric question has no answers to choose from");
+            }
+            int tilde = key.indexOf('~');
+            try {
+                double value = Double.parseDouble(key.substring(1 , tilde < 0 ? key.length() : tilde).trim());
+                double tolerance = tilde < 0 ? 0 : Double.parseDouble(key.substring(tilde + 1).trim());
+                if (!Double.isFinite(value) || !(tolerance >= 0) || Math.abs(value) + tolerance >= 1e12) {
+                    throw new IllegalArgumentException("numeric answer out of range");
+                }
+                return Quiz.numeric(question , value , tolerance , weight);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid numeric answer");
+            }
+        }
+
+        if (answers.length < 2 || answers.length > AnswerKeys.MAX_OPTIONS) {
+            throw new IllegalArgumentException(String.format("expected 2 to %d answers" , AnswerKeys.MAX_OPTIONS));
+        }
+        int correctAnswers = 0;
+        for (String number : key.split("\\+")) {
+            int correctAnswer = parseNumber(number , "correct answer");
+            if (correctAnswer < 1 || correctAnswer > answers.length) {
+                throw new IllegalArgumentException("correct answer out of range");
+            }
+            correctAnswers |= 1 << (correctAnswer - 1);
+        }
+        return Quiz.choice(question , answers , correctAnswers , weight);
+    }
+
+    private static int parseNumber(String text , String what) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + what);
+        }
+    }
+
+    // Static method to check a tag name: lower-case letters, digits, '-' and '_'
+    private static String parseTag(String text) {
+        String tag = text.trim();
+        if (tag.isEmpty() || tag.length() > MAX_TAG_LENGTH || !tag.chars().allMatch(c ->
+                (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_')) {
+            throw new IllegalArgumentException("invalid tag: " + tag);
+        }
+        return tag;
+    }
+
+    // Static method to split a CSV line, honouring double-quoted fields
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // Static method to write zeros up to the next multiple of alignment
+    private static void pad(DataOutputStream output , int alignment) throws IOException {
+        while (output.size() % alignment != 0) {
+            output.write(0);
+        }
+    }
+
+    private static int align(int position , int alignment) {
+        return (position + alignment - 1) / alignment * alignment;
+    }
+
+    // Growable array of the IDs of one tag's questions, only used while building
+    private static final class TagIds {
+        int[] ids = new int[16];
+        int size;
+
+        void add(int id) {
+            // Questions come in order, so a tag listed twice on one question is the last ID
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids , size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    // Entry point building a store from a CSV catalog, to give the server a large bank it can map at once.
+    // Usage: QuestionStore catalog.csv store.qbank
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: QuestionStore catalog.csv store.qbank");
+            System.exit(2);
+        }
+        Path target = Paths.get(args[1]).toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent() , target.getFileName().toString() , ".tmp");
+        try {
+            int size = build(Paths.get(args[0]) , temporary);
+            // Swap the new store in with a rename: a server that mapped the old file keeps reading it until it reloads
+            Files.move(temporary , target , StandardCopyOption.REPLACE_EXISTING , StandardCopyOption.ATOMIC_MOVE);
+            System.out.printf("Wrote %d questions to %s\n" , size , target);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package game;
+
+public class Quiz {
+    public String Question; // Public field to hold the quiz question
+    public String[] Answers; // Public field to hold the answer choices, empty for a numeric question
+    public int CorrectAnswer; // Public field to hold the number (1-based) of the correct answer, the first one of a multi-select, 0 for a numeric question
+    public int CorrectAnswers; // Public field to hold the correct answers, bit i set when answer i + 1 is correct
+    public double Value; // Public field to hold the expected answer of a numeric question
+    public double Tolerance; // Public field to hold how far from Value a numeric answer may be
+    public int Weight; // Public field to hold the points multiplier of the question
+
+    public Quiz(String question , String[] answers , int correctAnswer) {
+        this(question , answers , 1 << (correctAnswer - 1) , 0 , 0 , 1);
+    }
+
+    private Quiz(String question , String[] answers , int correctAnswers , double value , double tolerance , int weight) {
+        Question = question; // Initialize the quiz question
+        Answers = answers; // Initialize the answer choices
+        CorrectAnswers = correctAnswers; // Initialize the correct answers
+        CorrectAnswer = correctAnswers == 0 ? 0 : Integer.numberOfTrailingZeros(correctAnswers) + 1; // Lowest correct answer
+        Value = value; // Initialize the expected numeric answer
+        Tolerance = tolerance; // Initialize the accepted distance from it
+        Weight = weight; // Initialize the points multiplier
+    }
+
+    // Static method to create a question answered with the letters of one or more of its answers
+    public static Quiz choice(String question , String[] answers , int correctAnswers , int weight) {
+        return new Quiz(question , answers , correctAnswers , 0 , 0 , weight);
+    }
+
+    // Static method to create a question answered with a number, within tolerance of value
+    public static Quiz numeric(String question , double value , double tolerance , int weight) {
+        return new Quiz(question , new String[0] , 0 , value , tolerance , weight);
+    }
+
+    public String getQuestion() {
+
+        return Question; // Getter method to retrieve the quiz question
+    }
+
+    public String[] getAnswers() {
+
+        return Answers; // Getter method to retrieve the answer choices
+    }
+
+    // Method to check if the question is answered with a number
+    public boolean isNumeric() {
+        return CorrectAnswers == 0;
+    }
+
+    // Method to check if more than one answer has to be chosen
+    public boolean isMultiSelect() {
+        return Integer.bitCount(CorrectAnswers) > 1;
+    }
+
+
+    // Override the toString() method to provide a custom string representation of the quiz
+    @Override
+    public String toString() {
+        // Create a string representation with the question and answer choices
+        StringBuilder str = new StringBuilder(Question).append('\n');
+        for (String answer : Answers) {
+            str.append(answer).append('\n');
+        }
+        // Tell the player how to answer when it is not a single letter
+        if (isNumeric()) {
+            str.append("(Answer with a number)\n");
+        } else if (isMultiSelect()) {
+            str.append("(Choose every correct answer, e.g. AC)\n");
+        }
+        if (Weight > 1) {
+            str.append(String.format("(Worth %d times the points)\n" , Weight));
+        }
+        return str.toString();
+    }
+
+}
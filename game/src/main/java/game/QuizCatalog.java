@@ -0,0 +1,162 @@
+package game;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Immutable question bank, a QuestionStore mapped from a store file or compiled from a CSV catalog.
+// Every question's QUIZ line and binary frame are encoded when the store is built, so sessions copy them out of the
+// mapped file as they are, and the answer keys are read from the store, so answers are checked without the questions.
+// The text, keys and tag lists of the questions stay in the mapped file and only the pages that are played are
+// read, so the heap used by a catalog does not grow with the bank.
+// A new catalog can be swapped in at any time; sessions keep the catalog they started their quiz with.
+// Answer times are kept per question in lock-free histograms, created when a question is first answered,
+// for the first TRACKED_QUESTIONS questions of the bank.
+public final class QuizCatalog {
+
+    private static final int TRACKED_QUESTIONS = 1024; // Questions with their own answer times, a histogram is ~15 KB
+    private static final int SCRATCH_SIZE = 1024; // Initial size of the buffers questions are copied into
+
+    private static volatile QuizCatalog current; // The catalog handed to sessions starting a quiz
+
+    // Buffer of each I/O thread the question being sent is copied into, grown for long questions
+    private static final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[SCRATCH_SIZE]);
+
+    private final QuestionStore store; // Questions, keys and tags, read from the mapped file
+    private final AnswerKeys keys; // Compiled answer key and weight of every question
+    private final AtomicReferenceArray<LatencyHistogram> answerTimes; // Answer times per tracked question, null until answered
+
+    private QuizCatalog(QuestionStore store) {
+        this.store = store;
+        this.keys = store.keys();
+        this.answerTimes = new AtomicReferenceArray<>(Math.min(store.size() , TRACKED_QUESTIONS));
+    }
+
+    // Static method to get the catalog currently in use
+    public static QuizCatalog current() {
+        QuizCatalog catalog = current;
+        if (catalog == null) {
+            throw new IllegalStateException("Quiz catalog not loaded");
+        }
+        return catalog;
+    }
+
+    // Static method to load a catalog file and make it the current one
+    public static QuizCatalog load(Path file) throws IOException {
+        // A store file is mapped as it is, a CSV catalog is compiled into one first
+        QuizCatalog catalog = new QuizCatalog(QuestionStore.isStore(file) ? QuestionStore.open(file) : QuestionStore.compile(file));
+        current = catalog;
+        Log.info("Loaded %d questions with %d tags from %s" , catalog.size() , catalog.store.tags().size() , file);
+        return catalog;
+    }
+
+    // Static method to reload the catalog whenever its file changes, on a background thread
+    public static void watch(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path name = file.getFileName();
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService , StandardWatchEventKinds.ENTRY_MODIFY , StandardWatchEventKinds.ENTRY_CREATE);
+
+        Thread watcher = new Thread(() -> {
+            while (true) {
+                try {
+                    WatchKey key = watchService.take();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (name.equals(event.context())) {
+                            load(file);
+                        }
+                    }
+                    key.reset();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    // Keep serving the previous catalog if the new file is invalid
+                    Log.warn("Fail to reload quiz catalog: %s" , e.getMessage());
+                }
+            }
+        } , "quiz-catalog-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    // Method to get the number of questions
+    public int size() {
+        return store.size();
+    }
+
+    // Method to get a sampler drawing the questions of a tag, or of the whole bank if the tag is null,
+    // in random order without repeats; null for an unknown tag
+    QuestionSampler sampler(String tag) {
+        if (tag == null) return new QuestionSampler(null , store.size());
+        IntBuffer ids = store.tag(tag);
+        return ids == null ? null : new QuestionSampler(ids , ids.limit());
+    }
+
+    // Method to get a copy of the encoded QUIZ line of a question
+    public byte[] quizLine(int quizNumber) {
+        return copyQuiz(quizNumber , false);
+    }
+
+    // Method to get a copy of the encoded binary QUIZ frame of a question
+    public byte[] quizFrame(int quizNumber) {
+        return copyQuiz(quizNumber , true);
+    }
+
+    // Method to write the encoded QUIZ line or binary frame of a question to a connection.
+    // The bytes go through a buffer of the calling thread, which the connection copies if it cannot send them at once.
+    public void writeQuiz(Connection connection , int quizNumber) {
+        boolean binary = connection.isBinary();
+        int length = store.quizLength(quizNumber , binary);
+        byte[] buffer = scratch.get();
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length , buffer.length * 2)];
+            scratch.set(buffer);
+        }
+        store.copyQuiz(quizNumber , binary , buffer);
+        connection.write(buffer , 0 , length);
+    }
+
+    private byte[] copyQuiz(int quizNumber , boolean binary) {
+        byte[] quiz = new byte[store.quizLength(quizNumber , binary)];
+        store.copyQuiz(quizNumber , binary , quiz);
+        return quiz;
+    }
+
+    // Method to check a player's answer to a question, read straight from the received bytes
+    public boolean isCorrect(int quizNumber , byte[] response , int offset , int length) {
+        return keys.isCorrect(quizNumber , response , offset , length);
+    }
+
+    // Method to get the points multiplier of a question
+    public int weight(int quizNumber) {
+        return keys.weight(quizNumber);
+    }
+
+    // Method to record how long a player took to answer a question, if its answer times are tracked
+    public void recordAnswerTime(int quizNumber , long nanos) {
+        if (quizNumber >= answerTimes.length()) return;
+        LatencyHistogram histogram = answerTimes.get(quizNumber);
+        if (histogram == null) {
+            answerTimes.compareAndSet(quizNumber , null , new LatencyHistogram());
+            histogram = answerTimes.get(quizNumber);
+        }
+        histogram.record(nanos);
+    }
+
+    // Method to get the number of questions whose answer times are tracked, the first ones of the bank
+    public int trackedQuestions() {
+        return answerTimes.length();
+    }
+
+    // Method to get the answer times of a tracked question, or null if it was never answered
+    public LatencyHistogram answerTimes(int quizNumber) {
+        return answerTimes.get(quizNumber);
+    }
+}
@@ -0,0 +1,190 @@
+package game;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Multiplayer game room: every member gets the same question at the same time.
+// A round pushes the question to all members, collects ANSWER_QUIZ replies until the deadline
+// (or until everyone has answered), then pushes each member's RESULT_ANSWER.
+// Questions are drawn at random from the QuizCatalog without repeats, and come pre-encoded from it,
+// so one buffer is fanned out to every member.
+public class Room {
+
+    // Static map of the open rooms by name
+    private static final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+
+    // Static scheduler running the rounds of every room
+    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2 , task -> {
+        Thread thread = new Thread(task , "room-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static volatile long lobbyMillis = 5_000; // Time between the first join and the first question
+    private static volatile long answerMillis = 10_000; // Time members have to answer each question
+    private static volatile int questionsPerGame; // Questions played in a game, 0 for every question of the bank
+
+    private final String name; // Name players join the room with
+    private final QuizCatalog catalog; // Questions played in this room
+    private final QuestionSampler questions; // Draws the room's questions, only used by the round being asked
+    private final CopyOnWriteArrayList<ClientManager> members = new CopyOnWriteArrayList<>(); // Players in the room
+    private final AtomicInteger answers = new AtomicInteger(); // Answers received for the open round
+    private final AtomicInteger closedRound = new AtomicInteger(-1); // Last round whose results were sent
+    private final byte[] out = new byte[64]; // Reused to encode results, only touched by the round being closed
+    private volatile int round = -1; // Round being played, -1 before the first one
+    private volatile int question; // Question of the round being played, set before round
+    private volatile long askedAt; // System.nanoTime() when the open round's question was sent
+    private volatile boolean finished; // Whether the last question has been played
+
+    private Room(String name , QuizCatalog catalog) {
+        this.name = name;
+        this.catalog = catalog;
+        this.questions = catalog.sampler(null);
+    }
+
+    // Static method to set the lobby time, the answer deadline of new rounds and the questions per game (0 for all)
+    public static void configure(long lobby , long answer , int perGame) {
+        lobbyMillis = lobby;
+        answerMillis = answer;
+        questionsPerGame = perGame;
+    }
+
+    // Static method to add a session to a room, opening the room if needed
+    static Room join(String name , ClientManager session) {
+        while (true) {
+            Room room = rooms.computeIfAbsent(name , key -> {
+                Room created = new Room(key , QuizCatalog.current());
+                scheduler.schedule(() -> created.ask(0) , lobbyMillis , TimeUnit.MILLISECONDS);
+                return created;
+            });
+            if (!room.finished) {
+                room.members.add(session);
+                // Check again, the game may have ended while joining
+                if (!room.finished) return room;
+                room.members.remove(session);
+            }
+            // The game in this room just ended, start a new one under the same name
+            rooms.remove(name , room);
+        }
+    }
+
+    // Method to get the name of the room
+    public String name() {
+        return name;
+    }
+
+    // Method to get the number of members
+    public int size() {
+        return members.size();
+    }
+
+    // Method to remove a member, e.g. when it quits; the game ends with its last member
+    void leave(ClientManager session) {
+        members.remove(session);
+        if (members.isEmpty() && !finished) finish();
+    }
+
+    // Method to record a member's answer to the open round; only the first answer counts.
+    // Called from the member's I/O thread.
+    void answer(ClientManager session , byte[] array , int offset , int length) throws Exception {
+        // Time the answer from the question fan-out to reading the answer off the member's socket
+        long receivedAt = session.connection().receivedAt();
+        answer(session , receivedAt - askedAt , receivedAt , array , offset , length);
+    }
+
+    // Method to record a member's answer that was already timed, e.g. by the member's node in a cluster
+    void answer(ClientManager session , long answerNanos , long receivedAt , byte[] array , int offset , int length) throws Exception {
+        int current = round;
+        int asked = question;
+        if (current < 0 || closedRound.get() >= current) {
+            throw new Exception("No open question");
+        }
+        boolean correct = catalog.isCorrect(asked , array , offset , length);
+        if (!session.recordRoomAnswer(current , correct , answerNanos)) {
+            throw new Exception("Already answered");
+        }
+        catalog.recordAnswerTime(asked , answerNanos);
+        Metrics.answerTimed(answerNanos , System.nanoTime() - receivedAt);
+
+        // Close the round early once every member has answered
+        if (answers.incrementAndGet() >= members.size()) {
+            scheduler.execute(() -> closeRound(current));
+        }
+    }
+
+    // Method to draw the question of a round, push it to every member and start its deadline
+    private void ask(int next) {
+        if (finished) return; // Everyone left during the lobby or the last round
+        int drawn = questions.next();
+        answers.set(0);
+        askedAt = System.nanoTime();
+        question = drawn;
+        round = next;
+
+        // Same pre-encoded buffer for every member, only the wire format differs
+        byte[] line = catalog.quizLine(drawn);
+        byte[] frame = catalog.quizFrame(drawn);
+        long start = System.nanoTime();
+        for (ClientManager member : members) {
+            Connection connection = member.connection();
+            if (connection instanceof ProxyConnection) continue; // Sent once per node below
+            connection.write(connection.isBinary() ? frame : line);
+        }
+        // Members connected to other nodes of the cluster get it through their node
+        Cluster.forwardQuestion(name , members , line , frame);
+        Log.info("Room %s: round %d (question %d) sent to %d players in %d us" ,
+                name , next + 1 , drawn + 1 , members.size() , (System.nanoTime() - start) / 1_000);
+
+        scheduler.schedule(() -> closeRound(next) , answerMillis , TimeUnit.MILLISECONDS);
+    }
+
+    // Method to score a round and push each member's result, then move on to the next question
+    private void closeRound(int closing) {
+        // The deadline and the early close may both fire, only the first one scores the round
+        if (!closedRound.compareAndSet(closing - 1 , closing)) return;
+        if (finished) return;
+
+        long window = TimeUnit.MILLISECONDS.toNanos(answerMillis);
+        for (ClientManager member : members) {
+            Participant participant = member.participant();
+            boolean correct = member.isRoomAnswerCorrect(closing);
+            long answerNanos = member.roomAnswerNanos(closing);
+            if (correct) member.addPoints(Scoring.points(answerNanos , window) * catalog.weight(question));
+
+            Connection connection = member.connection();
+            long answerMillis = TimeUnit.NANOSECONDS.toMillis(Math.max(answerNanos , 0));
+            int length = connection.isBinary()
+                    ? BinaryProtocol.writeResultAnswer(out , correct , participant.Points , answerMillis)
+                    : TextProtocol.writeResultAnswer(out , correct , participant.Points);
+            connection.write(out , 0 , length);
+        }
+        // Ranks are only final once the whole round is scored
+        for (ClientManager member : members) {
+            member.pushRank(out);
+        }
+
+        int perGame = questionsPerGame;
+        if (members.isEmpty()) {
+            // Nobody is left to play, stop drawing questions
+            finish();
+        } else if (questions.remaining() > 0 && (perGame == 0 || closing + 1 < perGame)) {
+            ask(closing + 1);
+        } else {
+            finish();
+        }
+    }
+
+    // Method to end the game: tell every member and close the room
+    private void finish() {
+        finished = true;
+        rooms.remove(name , this);
+        for (ClientManager member : members) {
+            member.leaveRoom(this , "Game ended");
+        }
+        members.clear();
+    }
+}
@@ -0,0 +1,43 @@
+package game;
+
+import java.util.concurrent.TimeUnit;
+
+// Points awarded for a correct answer.
+// In the default mode every correct answer is worth one point. In speed mode it is worth between
+// MIN_SPEED_POINTS and MAX_SPEED_POINTS, falling linearly with the answer time over the answer window,
+// and answers after the window only get the minimum. The answer time is measured by the server from
+// sending the QUIZ to reading the ANSWER_QUIZ off the socket, so the server's own queueing does not count.
+public final class Scoring {
+
+    public static final int MAX_SPEED_POINTS = 100; // Points for an instant answer
+    public static final int MIN_SPEED_POINTS = 50; // Points for an answer at or after the end of the window
+
+    private static volatile boolean speed; // Whether faster answers are worth more
+    private static volatile long windowNanos = TimeUnit.SECONDS.toNanos(20); // Answer window of solo quizzes
+
+    private Scoring() {
+    }
+
+    // Static method to turn speed scoring on or off and set the answer window of solo quizzes
+    public static void configure(boolean speedBased , long answerWindowMillis) {
+        speed = speedBased;
+        windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1 , answerWindowMillis));
+    }
+
+    // Static method to check if speed scoring is on
+    public static boolean isSpeedBased() {
+        return speed;
+    }
+
+    // Static method to get the points of a correct solo answer given in answerNanos
+    public static int points(long answerNanos) {
+        return points(answerNanos , windowNanos);
+    }
+
+    // Static method to get the points of a correct answer given in answerNanos out of a window, e.g. a room round
+    public static int points(long answerNanos , long window) {
+        if (!speed) return 1;
+        long elapsed = Math.min(Math.max(answerNanos , 0) , window);
+        return MAX_SPEED_POINTS - (int) ((MAX_SPEED_POINTS - MIN_SPEED_POINTS) * elapsed / window);
+    }
+}
@@ -0,0 +1,340 @@
+package game;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class Server {
+
+    private static final int PORT = 8888; // Default port the server listens on
+    private static final long ACCEPT_BACKOFF_MILLIS = 1_000; // Pause after a failed accept
+
+    // Entry point of the Server application
+    // Usage: Server [--mode=classic|virtual|nio] [--io-threads=N] [--quiz-file=questions.csv|bank.qbank]
+    //               [--bind=ADDRESS] [--port=8888] [--backlog=1024] [--acceptors=1]
+    //               [--log-level=trace|debug|info|warn|error] [--trace] [--tcp-nodelay=true|false] [--send-buffer=BYTES]
+    //               [--data-dir=data] [--no-journal] [--resume-capacity=100000] [--resume-ttl-seconds=120]
+    //               [--room-lobby-ms=5000] [--room-answer-ms=10000] [--room-questions=0]
+    //               [--cluster-nodes=host:port:peerPort,... --cluster-node=N --cluster-secret=SECRET] [--cluster-tick-ms=5]
+    //               [--tls-keystore=server.p12 [--tls-password=SECRET] [--tls-session-cache=20000]
+    //                [--tls-session-ttl-seconds=3600] [--tls-handshake-threads=N]]
+    // The key store password and the cluster secret can also come from the TLS_PASSWORD and CLUSTER_SECRET
+    // environment variables, out of the process list.
+    public static void main(String[] args) {
+        String mode = "classic";
+        long roomLobbyMillis = 5_000;
+        long roomAnswerMillis = 10_000;
+        int roomQuestions = 0;
+        Path quizFile = Paths.get("questions.csv");
+        int ioThreads = Runtime.getRuntime().availableProcessors();
+        boolean tcpNoDelay = true;
+        Path dataDir = Paths.get("data");
+        int resumeCapacity = 100_000;
+        long resumeTtlSeconds = 120;
+        int sendBuffer = 0;
+        long pingSeconds = 30;
+        long idleTimeoutSeconds = 90;
+        boolean speedScoring = false;
+        long answerWindowMillis = 20_000;
+        int metricsPort = 0;
+        int maxSessions = 0;
+        int rateLimit = 0;
+        int rateBurst = 20;
+        int maxOutboundBytes = 1 << 20;
+        String bindAddress = null;
+        int port = PORT;
+        int backlog = Listeners.DEFAULT_BACKLOG;
+        int acceptors = 1;
+        List<Cluster.Node> clusterNodes = new ArrayList<>();
+        int clusterNode = -1;
+        String clusterSecret = System.getenv("CLUSTER_SECRET");
+        long clusterTickMillis = 5;
+        Path tlsKeyStore = null;
+        String tlsPassword = System.getenv("TLS_PASSWORD");
+        int tlsSessionCache = 20_000;
+        long tlsSessionTtlSeconds = 3_600;
+        int tlsHandshakeThreads = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            if (arg.startsWith("--mode=")) {
+                mode = arg.substring("--mode=".length());
+            } else if (arg.startsWith("--bind=")) {
+                bindAddress = arg.substring("--bind=".length());
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--backlog=")) {
+                backlog = Integer.parseInt(arg.substring("--backlog=".length()));
+            } else if (arg.startsWith("--acceptors=")) {
+                acceptors = Integer.parseInt(arg.substring("--acceptors=".length()));
+            } else if (arg.startsWith("--io-threads=")) {
+                ioThreads = Integer.parseInt(arg.substring("--io-threads=".length()));
+            } else if (arg.startsWith("--quiz-file=")) {
+                quizFile = Paths.get(arg.substring("--quiz-file=".length()));
+            } else if (arg.startsWith("--room-lobby-ms=")) {
+                roomLobbyMillis = Long.parseLong(arg.substring("--room-lobby-ms=".length()));
+            } else if (arg.startsWith("--room-answer-ms=")) {
+                roomAnswerMillis = Long.parseLong(arg.substring("--room-answer-ms=".length()));
+            } else if (arg.startsWith("--room-questions=")) {
+                roomQuestions = Integer.parseInt(arg.substring("--room-questions=".length()));
+            } else if (arg.startsWith("--tcp-nodelay=")) {
+                tcpNoDelay = Boolean.parseBoolean(arg.substring("--tcp-nodelay=".length()));
+            } else if (arg.startsWith("--send-buffer=")) {
+                sendBuffer = Integer.parseInt(arg.substring("--send-buffer=".length()));
+            } else if (arg.startsWith("--data-dir=")) {
+                dataDir = Paths.get(arg.substring("--data-dir=".length()));
+            } else if (arg.equals("--no-journal")) {
+                dataDir = null;
+            } else if (arg.startsWith("--resume-capacity=")) {
+                resumeCapacity = Integer.parseInt(arg.substring("--resume-capacity=".length()));
+            } else if (arg.startsWith("--resume-ttl-seconds=")) {
+                resumeTtlSeconds = Long.parseLong(arg.substring("--resume-ttl-seconds=".length()));
+            } else if (arg.startsWith("--ping-seconds=")) {
+                pingSeconds = Long.parseLong(arg.substring("--ping-seconds=".length()));
+            } else if (arg.startsWith("--idle-timeout-seconds=")) {
+                idleTimeoutSeconds = Long.parseLong(arg.substring("--idle-timeout-seconds=".length()));
+            } else if (arg.equals("--speed-scoring")) {
+                // Faster correct answers are worth more points
+                speedScoring = true;
+            } else if (arg.startsWith("--answer-window-ms=")) {
+                answerWindowMillis = Long.parseLong(arg.substring("--answer-window-ms=".length()));
+            } else if (arg.startsWith("--max-sessions=")) {
+                maxSessions = Integer.parseInt(arg.substring("--max-sessions=".length()));
+            } else if (arg.startsWith("--rate-limit=")) {
+                rateLimit = Integer.parseInt(arg.substring("--rate-limit=".length()));
+            } else if (arg.startsWith("--rate-burst=")) {
+                rateBurst = Integer.parseInt(arg.substring("--rate-burst=".length()));
+            } else if (arg.startsWith("--max-outbound-bytes=")) {
+                maxOutboundBytes = Integer.parseInt(arg.substring("--max-outbound-bytes=".length()));
+            } else if (arg.startsWith("--cluster-nodes=")) {
+                for (String node : arg.substring("--cluster-nodes=".length()).split(",")) {
+                    clusterNodes.add(Cluster.Node.parse(node));
+                }
+            } else if (arg.startsWith("--cluster-node=")) {
+                clusterNode = Integer.parseInt(arg.substring("--cluster-node=".length()));
+            } else if (arg.startsWith("--cluster-secret=")) {
+                clusterSecret = arg.substring("--cluster-secret=".length());
+            } else if (arg.startsWith("--cluster-tick-ms=")) {
+                clusterTickMillis = Long.parseLong(arg.substring("--cluster-tick-ms=".length()));
+            } else if (arg.startsWith("--tls-keystore=")) {
+                tlsKeyStore = Paths.get(arg.substring("--tls-keystore=".length()));
+            } else if (arg.startsWith("--tls-password=")) {
+                tlsPassword = arg.substring("--tls-password=".length());
+            } else if (arg.startsWith("--tls-session-cache=")) {
+                tlsSessionCache = Integer.parseInt(arg.substring("--tls-session-cache=".length()));
+            } else if (arg.startsWith("--tls-session-ttl-seconds=")) {
+                tlsSessionTtlSeconds = Long.parseLong(arg.substring("--tls-session-ttl-seconds=".length()));
+            } else if (arg.startsWith("--tls-handshake-threads=")) {
+                tlsHandshakeThreads = Integer.parseInt(arg.substring("--tls-handshake-threads=".length()));
+            } else if (arg.startsWith("--metrics-port=")) {
+                metricsPort = Integer.parseInt(arg.substring("--metrics-port=".length()));
+            } else if (arg.equals("--jfr-events")) {
+                // Emit a JFR event per handled message, for flight recordings
+                Metrics.useJfrEvents(true);
+            } else if (arg.startsWith("--log-level=")) {
+                Log.setLevel(Log.Level.valueOf(arg.substring("--log-level=".length()).toUpperCase()));
+            } else if (arg.equals("--trace")) {
+                // Log every message in and out, for debugging
+                Log.setLevel(Log.Level.TRACE);
+            }
+        }
+
+        ExecutorService sessionExecutor = null;
+        if (mode.equals("virtual")) {
+            // Refuse rather than quietly run the classic mode under another name
+            sessionExecutor = virtualThreadExecutor();
+            if (sessionExecutor == null) {
+                Log.error(null , "--mode=virtual needs virtual threads (JDK 21 or newer), this is JDK %s; use --mode=classic or --mode=nio" ,
+                        Runtime.version().feature());
+                return;
+            }
+        }
+
+        Room.configure(roomLobbyMillis , roomAnswerMillis , roomQuestions);
+        Scoring.configure(speedScoring , answerWindowMillis);
+        TcpOptions.configure(tcpNoDelay , sendBuffer);
+        // Cap open connections, the message rate of each session and the replies a slow client may leave unread
+        Admission.configure(maxSessions , rateLimit , rateBurst , maxOutboundBytes);
+        ClientManager.configureResume(resumeCapacity , resumeTtlSeconds);
+        // PING silent clients, then drop the ones that still say nothing
+        ClientManager.configureHeartbeat(pingSeconds , idleTimeoutSeconds);
+        // Log messages and write syscalls every 10 seconds while there is traffic
+        Metrics.startReporting(10);
+        // Lets the log level be changed while the server runs, e.g. from jconsole
+        Log.registerMBean();
+        if (metricsPort > 0) {
+            try {
+                MetricsEndpoint.start(metricsPort);
+            } catch (IOException e) {
+                Log.error(e , "Fail to start the metrics endpoint on port %d" , metricsPort);
+            }
+        }
+
+        try {
+            // Load the question bank once and reload it whenever the file changes
+            QuizCatalog.load(quizFile);
+            QuizCatalog.watch(quizFile);
+        } catch (IOException e) {
+            Log.error(e , "Fail to load quiz catalog: %s" , e.getMessage());
+            return;
+        }
+
+        if (tlsKeyStore != null) {
+            try {
+                // Encrypt client connections, and let reconnecting clients resume their TLS session
+                char[] password = tlsPassword == null ? new char[0] : tlsPassword.toCharArray();
+                Tls.use(Tls.serverContext(tlsKeyStore , password , tlsSessionCache , tlsSessionTtlSeconds) , tlsHandshakeThreads);
+                Log.info("TLS enabled with key store %s" , tlsKeyStore);
+            } catch (IOException | GeneralSecurityException e) {
+                Log.error(e , "Fail to load the TLS key store %s" , tlsKeyStore);
+                return;
+            }
+        }
+
+        if (dataDir != null) {
+            try {
+                // Recover the participants of previous runs and keep journaling registrations and scores
+                Journal journal = Journal.open(dataDir , Journal.DEFAULT_SEGMENT_SIZE);
+                ClientManager.restore(journal);
+                Journal.use(journal);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        journal.close();
+                    } catch (IOException e) {
+                        Log.error(e , "Fail to close the journal");
+                    }
+                }));
+            } catch (IOException e) {
+                Log.error(e , "Fail to open the journal in %s" , dataDir);
+                return;
+            }
+        }
+
+        if (!clusterNodes.isEmpty()) {
+            try {
+                // Share rooms and the leaderboard with the other nodes, and serve clients on this node's port
+                Cluster.configure(clusterNodes , clusterNode , clusterSecret , clusterTickMillis);
+                ClientManager.reserveIds(Cluster.idBase());
+                Cluster.start();
+                port = Cluster.self().port;
+            } catch (IOException | IllegalArgumentException e) {
+                Log.error(e , "Fail to join the cluster");
+                return;
+            }
+        }
+
+        InetSocketAddress address;
+        try {
+            // Listen on every address unless told otherwise
+            address = bindAddress == null
+                    ? new InetSocketAddress(port)
+                    : new InetSocketAddress(InetAddress.getByName(bindAddress) , port);
+        } catch (UnknownHostException e) {
+            Log.error(e , "Unknown bind address: %s" , bindAddress);
+            return;
+        }
+
+        switch (mode) {
+            case "nio":
+                // Serve every client from a small fixed set of event loop threads
+                try {
+                    new NioServer(address , backlog , ioThreads , acceptors).start();
+                } catch (IOException e) {
+                    Log.error(e , "Fail to start the server");
+                }
+                return;
+            case "virtual":
+                // Run every blocking session and its reader loop on a virtual thread
+                ClientManager.useExecutor(sessionExecutor);
+                break;
+            case "classic":
+                break;
+            default:
+                Log.error(null , "Unknown mode: %s" , mode);
+                return;
+        }
+
+        Server server = new Server();
+        server.startServer(address , backlog , acceptors); // Start the server to listen for client connections
+    }
+
+    // Method to start the server and listen for incoming client connections,
+    // on one thread per acceptor, each with its own SO_REUSEPORT socket when there are several
+    private void startServer(InetSocketAddress address , int backlog , int acceptors) {
+        acceptors = Listeners.usableAcceptors(acceptors);
+        List<ServerSocket> serverSockets;
+        try {
+            // Create the ServerSockets and bind them to the address
+            serverSockets = Listeners.openBlocking(address , backlog , acceptors);
+            Log.info("Server (%d acceptors) run on: %s:%d" , acceptors , address.getHostString() , serverSockets.get(0).getLocalPort());
+        } catch (IOException e) {
+            Log.error(e , "Fail to start the server");
+            return;
+        }
+
+        for (int i = 0; i < serverSockets.size(); i++) {
+            ServerSocket serverSocket = serverSockets.get(i);
+            new Thread(() -> accept(serverSocket) , acceptors == 1 ? "acceptor" : "acceptor-" + i).start();
+        }
+    }
+
+    // Method to accept client connections on one server socket
+    private void accept(ServerSocket serverSocket) {
+        // Keep accepting whatever goes wrong with a single connection, until the server socket is closed
+        while (!serverSocket.isClosed()) {
+            Log.debug("Waiting for client...");
+            try {
+                final Socket client = serverSocket.accept();
+                Metrics.connectionAccepted();
+                if (!Admission.tryAdmit()) {
+                    Admission.reject(client);
+                    continue;
+                }
+                Log.debug("New client connection: %s" , client);
+                try {
+                    ClientManager.manage(client);
+                } catch (RuntimeException e) {
+                    // E.g. the session executor shutting down: give the slot back and drop the client
+                    Log.error(e , "Fail to start a client session");
+                    Admission.release();
+                    try {
+                        client.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) break;
+                // E.g. out of file descriptors: the error would repeat right away, so pause
+                // and leave the pending connections in the backlog
+                Metrics.acceptFailed();
+                Log.warn("Fail to accept a client, pausing accepts: %s" , e.getMessage());
+                try {
+                    Thread.sleep(ACCEPT_BACKOFF_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                Log.error(e , "Fail to accept a client");
+            }
+        }
+    }
+
+    // Method to create a virtual-thread-per-task executor, or null when the running JDK has no virtual threads
+    // (before 21, or 19/20 without --enable-preview). The build targets 17, so the API is looked up at run time.
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+}
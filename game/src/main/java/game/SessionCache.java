@@ -0,0 +1,104 @@
+package game;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Bounded cache of the state of disconnected sessions, so a player can RESUME on a new connection.
+// Entries expire after a fixed time and the least recently parked ones are evicted once a stripe is full.
+// The cache is split into independently locked stripes by client ID, so a reconnect storm after a network blip
+// costs each session one short lock and a map lookup.
+public class SessionCache {
+
+    private static final int STRIPES = 16; // Independently locked parts of the cache, a power of two
+
+    // State of one disconnected session
+    static final class Parked {
+        final long clientId; // ID the session was registered with
+        final long token; // Secret the client must present to resume
+        final Participant participant; // Name and points
+        final QuizCatalog catalog; // Question bank of the quiz in progress, or null if none was started
+        final QuestionSampler sampler; // Questions already drawn for the participant, or null if none was started
+        final int[] questions; // Questions the participant was on, the current one first and then any sent ahead
+        final boolean correctAnswer; // Whether the current question was answered correctly
+        final long parkedAt; // System.nanoTime() when the session was parked
+
+        Parked(long clientId , long token , Participant participant , QuizCatalog catalog , QuestionSampler sampler ,
+               int[] questions , boolean correctAnswer) {
+            this.clientId = clientId;
+            this.token = token;
+            this.participant = participant;
+            this.catalog = catalog;
+            this.sampler = sampler;
+            this.questions = questions;
+            this.correctAnswer = correctAnswer;
+            this.parkedAt = System.nanoTime();
+        }
+    }
+
+    private final LinkedHashMap<Long, Parked>[] stripes; // Parked sessions by client ID, oldest first
+    private final int stripeCapacity; // Most sessions kept per stripe
+    private final long ttlNanos; // How long a parked session can be resumed
+
+    @SuppressWarnings("unchecked")
+    public SessionCache(int capacity , long ttl , TimeUnit unit) {
+        this.stripeCapacity = Math.max(1 , capacity / STRIPES);
+        this.ttlNanos = unit.toNanos(ttl);
+        this.stripes = new LinkedHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LinkedHashMap<>(16 , 0.75f , false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Parked> eldest) {
+                    return size() > stripeCapacity;
+                }
+            };
+        }
+    }
+
+    // Method to keep the state of a disconnected session
+    void park(Parked session) {
+        LinkedHashMap<Long, Parked> stripe = stripe(session.clientId);
+        synchronized (stripe) {
+            evictExpired(stripe , System.nanoTime());
+            // Parking again moves the session to the young end
+            stripe.remove(session.clientId);
+            stripe.put(session.clientId , session);
+        }
+    }
+
+    // Method to take the state of a parked session back, or null if it is unknown, expired or the token is wrong.
+    // A wrong token leaves the session parked, so guessing cannot evict it.
+    Parked take(long clientId , long token) {
+        LinkedHashMap<Long, Parked> stripe = stripe(clientId);
+        synchronized (stripe) {
+            Parked session = stripe.get(clientId);
+            if (session == null || session.token != token) return null;
+            stripe.remove(clientId);
+            return System.nanoTime() - session.parkedAt <= ttlNanos ? session : null;
+        }
+    }
+
+    // Method to get the number of parked sessions, expired ones included until they are evicted
+    public int size() {
+        int size = 0;
+        for (LinkedHashMap<Long, Parked> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    // Method to drop the expired sessions at the old end of a stripe
+    private void evictExpired(LinkedHashMap<Long, Parked> stripe , long now) {
+        Iterator<Parked> oldest = stripe.values().iterator();
+        while (oldest.hasNext() && now - oldest.next().parkedAt > ttlNanos) {
+            oldest.remove();
+        }
+    }
+
+    private LinkedHashMap<Long, Parked> stripe(long clientId) {
+        return stripes[(int) (clientId ^ (clientId >>> 32)) & (STRIPES - 1)];
+    }
+}
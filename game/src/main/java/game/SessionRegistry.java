@@ -0,0 +1,52 @@
+package game;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Thread-safe registry of the live client sessions.
+// IDs come from an atomic counter so concurrent connects never share an ID,
+// and the backing map is a ConcurrentHashMap so lookups and iteration never take a lock.
+public class SessionRegistry {
+
+    private final AtomicLong nextId = new AtomicLong(); // Last client ID handed out
+    private final ConcurrentHashMap<Long, ClientManager> sessions = new ConcurrentHashMap<>(); // Live sessions by client ID
+
+    // Method to allocate a fresh client ID and store the session under it
+    public long register(ClientManager session) {
+        long id = nextId.incrementAndGet();
+        sessions.put(id , session);
+        return id;
+    }
+
+    // Method to make sure new IDs come after the given one, e.g. IDs recovered from the journal
+    public void reserveUpTo(long id) {
+        nextId.accumulateAndGet(id , Math::max);
+    }
+
+    // Method to store a session under an ID handed out earlier, e.g. when it is resumed
+    public void attach(long id , ClientManager session) {
+        sessions.put(id , session);
+    }
+
+    // Method to remove a session, only if it is still the one stored under the ID
+    public boolean remove(long id , ClientManager session) {
+        return sessions.remove(id , session);
+    }
+
+    // Method to look up a session by its client ID, or null if it is gone
+    public ClientManager get(long id) {
+        return sessions.get(id);
+    }
+
+    // Method to visit every live session, e.g. for broadcasts
+    // Sessions added or removed during the walk may or may not be seen
+    public void forEach(Consumer<ClientManager> action) {
+        sessions.values().forEach(action);
+    }
+
+    // Method to get the number of live sessions
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,282 @@
+package game;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Blocking Connection backed by a plain Socket, read by a dedicated thread.
+// Lines and frames are parsed out of one reusable buffer, so reading does not allocate per message.
+// Replies written by the reader thread are buffered until it has handled every message already received,
+// so a burst of requests is answered with one write. Writes from other threads, e.g. room broadcasts, are buffered
+// too and sent by a task on the session executor, so they never block on a client that stopped reading;
+// a client whose unsent replies pass the outbound limit is dropped.
+public class SocketConnection implements Connection {
+
+    // Longest line or frame (plus its length prefix) accepted before the client is dropped
+    private static final int MAX_MESSAGE_LENGTH = BinaryProtocol.MAX_FRAME_LENGTH + 8;
+    private static final int OUT_SIZE = 1024; // Initial size of the reply buffers
+    private static final int KEPT_OUT_SIZE = 64 * 1024; // Larger reply buffers are dropped once sent
+
+    private final Socket socket; // The client's socket
+    private final OutputStream output; // Stream to send messages to the client
+    private final InputStream input; // Stream to read messages from the client
+    private final Executor executor; // Runs tasks submitted through execute
+    private byte[] buffer = new byte[4096]; // Bytes read from the client, unread ones are [start, end)
+    private int start; // First unread byte in the buffer
+    private int end; // End of the bytes read so far
+    private int messageOffset; // Offset in the buffer of the message returned by the last read
+    private final int[] frameLength = new int[1]; // Body length of the last frame found by BinaryProtocol.findFrame
+    private volatile boolean binary; // Whether the client negotiated the binary protocol
+    private byte[] out = new byte[OUT_SIZE]; // Replies not written yet, guarded by outLock
+    private int outLength; // Number of bytes in out
+    private byte[] spare = new byte[OUT_SIZE]; // Swapped in for out while out is being sent, guarded by outLock
+    private boolean flushScheduled; // Whether a flush task is queued for writes from other threads, guarded by outLock
+    private final ReentrantLock sendLock = new ReentrantLock(); // Held while writing to the socket, one sender at a time
+    // Guards the reply buffers. A lock rather than synchronized, so virtual threads never pin their carrier here.
+    private final ReentrantLock outLock = new ReentrantLock();
+    private final AtomicBoolean closed = new AtomicBoolean(); // Set by the first close
+    private final Runnable flushTask = this::flushFromTask; // Reused task sending writes from other threads
+    private long receivedAt; // System.nanoTime() of the last read, only touched by the reader
+    private volatile Thread reader; // Thread reading from the client, its writes are flushed before it blocks
+
+    public SocketConnection(Socket socket , Executor executor) throws IOException {
+        this.socket = socket;
+        this.executor = executor;
+        // Initialize input and output streams for communication with the client
+        this.input = socket.getInputStream();
+        this.output = socket.getOutputStream();
+        TcpOptions.apply(socket);
+    }
+
+    // Method to wait for the first byte from the client and pick the protocol it asks for
+    public boolean negotiate() throws IOException {
+        reader = Thread.currentThread();
+        if (!fill()) return false;
+        if ((buffer[start] & 0xFF) == BinaryProtocol.MAGIC) {
+            binary = true;
+            start++;
+        }
+        // Otherwise the byte belongs to the first text line
+        return binary;
+    }
+
+    // Method to read the next line from the client, blocking until one is available.
+    // Returns the line length (without the line ending) or -1 at end of stream; the line starts at messageOffset().
+    public int readLine() throws IOException {
+        while (true) {
+            for (int i = start; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    messageOffset = start;
+                    start = i + 1;
+                    // Accept both \n and \r\n line endings
+                    int length = i - messageOffset;
+                    if (length > 0 && buffer[i - 1] == '\r') length--;
+                    return length;
+                }
+            }
+            if (!fill()) return -1;
+        }
+    }
+
+    // Method to read the next binary frame from the client, blocking until one is available.
+    // Returns the body length or -1 at end of stream; the body starts at messageOffset().
+    public int readFrame() throws IOException {
+        while (true) {
+            final int body;
+            try {
+                body = BinaryProtocol.findFrame(buffer , start , end , frameLength);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage());
+            }
+            if (body >= 0) {
+                messageOffset = body;
+                start = body + frameLength[0];
+                return frameLength[0];
+            }
+            if (!fill()) return -1;
+        }
+    }
+
+    // Method to get the buffer holding the message returned by the last read, valid until the next read
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    // Method to get the offset of the message returned by the last read
+    public int messageOffset() {
+        return messageOffset;
+    }
+
+    // Method to read more bytes from the socket, returning false at end of stream
+    private boolean fill() throws IOException {
+        if (start > 0) {
+            // Move the unread bytes to the front to make room
+            System.arraycopy(buffer , start , buffer , 0 , end - start);
+            end -= start;
+            start = 0;
+        }
+        // Every received message has been handled, send the replies before waiting for more
+        flush();
+        if (end == buffer.length) {
+            if (buffer.length >= MAX_MESSAGE_LENGTH) throw new IOException("Message too long");
+            byte[] grown = new byte[Math.min(buffer.length * 2 , MAX_MESSAGE_LENGTH)];
+            System.arraycopy(buffer , 0 , grown , 0 , end);
+            buffer = grown;
+        }
+        int read = input.read(buffer , end , buffer.length - end);
+        if (read < 0) return false;
+        receivedAt = System.nanoTime();
+        Metrics.bytesRead(read);
+        end += read;
+        return true;
+    }
+
+    @Override
+    public boolean isBinary() {
+        return binary;
+    }
+
+    @Override
+    public void write(String line) {
+        write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void write(byte[] line) {
+        write(line , 0 , line.length);
+    }
+
+    @Override
+    public void write(byte[] array , int offset , int length) {
+        boolean fromReader = Thread.currentThread() == reader;
+        outLock.lock();
+        try {
+            if (closed.get()) return;
+            if (outLength + length > Admission.maxOutboundBytes()) {
+                // The client stopped reading: drop it rather than buffer without bound
+                Metrics.slowConsumer();
+                Log.debug("Dropping slow client %s with %d bytes unsent" , socket , outLength);
+                abort();
+                return;
+            }
+            if (outLength + length > out.length) {
+                byte[] grown = new byte[Math.max(out.length * 2 , outLength + length)];
+                System.arraycopy(out , 0 , grown , 0 , outLength);
+                out = grown;
+            }
+            System.arraycopy(array , offset , out , outLength , length);
+            outLength += length;
+            // Counted once buffered, like the nio transport, so writes dropped on a closed connection are not
+            Metrics.messageWritten();
+            // The reader flushes before it blocks, anyone else leaves it to a flush task
+            if (fromReader || flushScheduled) return;
+            flushScheduled = true;
+        } finally {
+            outLock.unlock();
+        }
+        executor.execute(flushTask);
+    }
+
+    // Method to send the buffered replies, blocking until the socket takes them
+    public void flush() {
+        sendLock.lock();
+        try {
+            sendBuffered();
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    // Method to send the buffered replies, called with the send lock held.
+    // The buffer is swapped out first, so other threads keep writing while the socket is busy.
+    private void sendBuffered() {
+        byte[] pending;
+        int length;
+        outLock.lock();
+        try {
+            flushScheduled = false;
+            if (outLength == 0) return;
+            pending = out;
+            length = outLength;
+            out = spare;
+            outLength = 0;
+            spare = null;
+        } finally {
+            outLock.unlock();
+        }
+        try {
+            send(pending , 0 , length);
+        } finally {
+            outLock.lock();
+            try {
+                spare = pending.length > KEPT_OUT_SIZE ? new byte[OUT_SIZE] : pending;
+            } finally {
+                outLock.unlock();
+            }
+        }
+    }
+
+    private void flushFromTask() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // The client is gone, its reader thread notices and ends the session
+            abort();
+        }
+    }
+
+    private void send(byte[] array , int offset , int length) {
+        try {
+            output.write(array , offset , length);
+            Metrics.writeSyscall(length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public long receivedAt() {
+        return receivedAt;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false , true)) return;
+        // Send what is still buffered, e.g. the reply to QUIT, unless a send is stuck on a client that stopped reading
+        if (sendLock.tryLock()) {
+            try {
+                sendBuffered();
+            } catch (RuntimeException ignored) {
+            } finally {
+                sendLock.unlock();
+            }
+        }
+        socket.close();
+        Admission.release();
+    }
+
+    // Method to close the socket without sending what is buffered; a blocked send fails right away
+    private void abort() {
+        if (!closed.compareAndSet(false , true)) return;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        Admission.release();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get() && socket.isConnected() && !socket.isClosed();
+    }
+}
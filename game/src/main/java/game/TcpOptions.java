@@ -0,0 +1,34 @@
+package game;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+
+// Socket options applied to every accepted client connection, set once from the command line
+public final class TcpOptions {
+
+    private static volatile boolean noDelay = true; // Disable Nagle, replies are already coalesced per tick
+    private static volatile int sendBufferSize = 0; // SO_SNDBUF in bytes, 0 keeps the OS default
+
+    private TcpOptions() {
+    }
+
+    // Static method to set the options used for new connections
+    public static void configure(boolean tcpNoDelay , int sendBuffer) {
+        noDelay = tcpNoDelay;
+        sendBufferSize = sendBuffer;
+    }
+
+    // Static method to apply the options to a blocking socket
+    public static void apply(Socket socket) throws IOException {
+        socket.setTcpNoDelay(noDelay);
+        if (sendBufferSize > 0) socket.setSendBufferSize(sendBufferSize);
+    }
+
+    // Static method to apply the options to a non-blocking channel
+    public static void apply(SocketChannel channel) throws IOException {
+        channel.setOption(StandardSocketOptions.TCP_NODELAY , noDelay);
+        if (sendBufferSize > 0) channel.setOption(StandardSocketOptions.SO_SNDBUF , sendBufferSize);
+    }
+}
@@ -0,0 +1,143 @@
+package game;
+
+import java.nio.charset.StandardCharsets;
+
+// Byte-level helpers for the EVENT;;payload text protocol.
+// Lets the server parse and answer text lines straight from byte arrays, without substrings, regexes or String.format.
+// Event names map to the same opcodes as BinaryProtocol.
+public final class TextProtocol {
+
+    public static final byte UNKNOWN = 0; // Opcode of an event name the server does not know
+
+    // Event names indexed by their BinaryProtocol opcode
+    private static final byte[][] EVENT_NAMES = new byte[BinaryProtocol.MAX_OPCODE + 1][];
+
+    private static final byte[] DELIMITER = ";;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] YES = "YES,".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NO = "NO,".getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        EVENT_NAMES[BinaryProtocol.REGISTER] = ascii("REGISTER");
+        EVENT_NAMES[BinaryProtocol.QUIZ] = ascii("QUIZ");
+        EVENT_NAMES[BinaryProtocol.ANSWER_QUIZ] = ascii("ANSWER_QUIZ");
+        EVENT_NAMES[BinaryProtocol.NEXT_QUIZ] = ascii("NEXT_QUIZ");
+        EVENT_NAMES[BinaryProtocol.QUIT] = ascii("QUIT");
+        EVENT_NAMES[BinaryProtocol.RESULT_ANSWER] = ascii("RESULT_ANSWER");
+        EVENT_NAMES[BinaryProtocol.ERROR] = ascii("ERROR");
+        EVENT_NAMES[BinaryProtocol.JOIN_ROOM] = ascii("JOIN_ROOM");
+        EVENT_NAMES[BinaryProtocol.LEADERBOARD] = ascii("LEADERBOARD");
+        EVENT_NAMES[BinaryProtocol.RANK] = ascii("RANK");
+        EVENT_NAMES[BinaryProtocol.RESUME] = ascii("RESUME");
+        EVENT_NAMES[BinaryProtocol.PING] = ascii("PING");
+        EVENT_NAMES[BinaryProtocol.PONG] = ascii("PONG");
+        EVENT_NAMES[BinaryProtocol.PREFETCH] = ascii("PREFETCH");
+    }
+
+    private TextProtocol() {
+    }
+
+    // Static method to find the first ";;" separator in a byte range, or -1 if there is none
+    public static int indexOfDelimiter(byte[] array , int from , int to) {
+        for (int i = from; i < to - 1; i++) {
+            if (array[i] == ';' && array[i + 1] == ';') return i;
+        }
+        return -1;
+    }
+
+    // Static method to map an event name to its opcode without creating a String
+    public static byte eventOpcode(byte[] array , int offset , int length) {
+        for (byte opcode = 1; opcode < EVENT_NAMES.length; opcode++) {
+            byte[] name = EVENT_NAMES[opcode];
+            if (name.length == length && regionMatches(array , offset , name)) return opcode;
+        }
+        return UNKNOWN;
+    }
+
+    // Static method to get the event name of an opcode, e.g. for metrics
+    public static String eventName(int opcode) {
+        if (opcode <= UNKNOWN || opcode >= EVENT_NAMES.length) return "UNKNOWN";
+        return new String(EVENT_NAMES[opcode] , StandardCharsets.US_ASCII);
+    }
+
+    // Static method to write "EVENT;;" for an opcode, returning the position after it
+    public static int writeEvent(byte[] out , int position , byte opcode) {
+        byte[] name = EVENT_NAMES[opcode];
+        System.arraycopy(name , 0 , out , position , name.length);
+        position += name.length;
+        System.arraycopy(DELIMITER , 0 , out , position , DELIMITER.length);
+        return position + DELIMITER.length;
+    }
+
+    // Static method to write a complete "REGISTER;;id,token\n" line, returning its length
+    public static int writeRegister(byte[] out , long clientId , long token) {
+        int position = writeEvent(out , 0 , BinaryProtocol.REGISTER);
+        position = writeDecimal(out , position , clientId);
+        out[position++] = ',';
+        position = writeDecimal(out , position , token);
+        out[position++] = '\n';
+        return position;
+    }
+
+    // Static method to write a complete "RESULT_ANSWER;;YES|NO,points\n" line, returning its length.
+    // The line keeps the two fields older text clients expect; the answer time is only sent in binary frames.
+    public static int writeResultAnswer(byte[] out , boolean correct , int points) {
+        int position = writeEvent(out , 0 , BinaryProtocol.RESULT_ANSWER);
+        byte[] result = correct ? YES : NO;
+        System.arraycopy(result , 0 , out , position , result.length);
+        position = writeDecimal(out , position + result.length , points);
+        out[position++] = '\n';
+        return position;
+    }
+
+    // Static method to write a complete "RANK;;rank,players\n" line, returning its length
+    public static int writeRank(byte[] out , int rank , int players) {
+        int position = writeEvent(out , 0 , BinaryProtocol.RANK);
+        position = writeDecimal(out , position , rank);
+        out[position++] = ',';
+        position = writeDecimal(out , position , players);
+        out[position++] = '\n';
+        return position;
+    }
+
+    // Static method to write a non-negative number in decimal, returning the position after it
+    public static int writeDecimal(byte[] out , int position , long value) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) digits++;
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            out[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    // Static method to read a non-negative decimal number from a byte range
+    public static int parseDecimal(byte[] array , int offset , int length) {
+        if (length > 9) throw new IllegalArgumentException("Invalid number");
+        return (int) parseLong(array , offset , length);
+    }
+
+    // Static method to read a non-negative decimal long from a byte range
+    public static long parseLong(byte[] array , int offset , int length) {
+        if (length < 1 || length > 19) throw new IllegalArgumentException("Invalid number");
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int digit = array[i] - '0';
+            if (digit < 0 || digit > 9) throw new IllegalArgumentException("Invalid number");
+            value = value * 10 + digit;
+            if (value < 0) throw new IllegalArgumentException("Invalid number");
+        }
+        return value;
+    }
+
+    private static boolean regionMatches(byte[] array , int offset , byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (array[offset + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
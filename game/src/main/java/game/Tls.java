@@ -0,0 +1,118 @@
+package game;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Optional TLS under both server modes, off unless a key store is given on the command line.
+// Sessions are resumed: the server context caches sessions and issues TLS 1.3 session tickets (on by default
+// since JDK 13), so a client reconnecting with the same SSLContext skips the certificate signature and its
+// verification. Handshakes never run on an I/O thread: a blocking session handshakes on its own session thread
+// on its first read, and the SSLEngine of a non-blocking connection hands its expensive steps (key exchange,
+// signatures) to the handshake threads, resuming on the event loop once they are done.
+public final class Tls {
+
+    private static volatile SSLContext serverContext; // Context of accepted connections, null while TLS is off
+    private static volatile ExecutorService handshakeExecutor; // Runs the delegated tasks of non-blocking handshakes
+
+    private Tls() {
+    }
+
+    // Static method to serve accepted connections over TLS with a context, or in plaintext with null.
+    // handshakeThreads is the number of threads running the CPU-heavy handshake steps of the nio mode.
+    public static void use(SSLContext context , int handshakeThreads) {
+        ExecutorService previous = handshakeExecutor;
+        AtomicInteger count = new AtomicInteger();
+        handshakeExecutor = context == null ? null : Executors.newFixedThreadPool(Math.max(1 , handshakeThreads) , task -> {
+            Thread thread = new Thread(task , "tls-handshake-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        serverContext = context;
+        if (previous != null) previous.shutdown();
+    }
+
+    // Check if accepted connections are served over TLS
+    public static boolean isEnabled() {
+        return serverContext != null;
+    }
+
+    // Static method to create the server context from a key store (PKCS12 or JKS) holding the certificate and its key.
+    // Up to sessionCacheSize sessions are kept for resuming, each for sessionTtlSeconds.
+    public static SSLContext serverContext(Path keyStore , char[] password , int sessionCacheSize , long sessionTtlSeconds)
+            throws IOException , GeneralSecurityException {
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(KeyStore.getInstance(keyStore.toFile() , password) , password);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers() , null , null);
+        context.getServerSessionContext().setSessionCacheSize(sessionCacheSize);
+        context.getServerSessionContext().setSessionTimeout((int) Math.min(sessionTtlSeconds , Integer.MAX_VALUE));
+        return context;
+    }
+
+    // Static method to create a client context trusting the certificates of a trust store, e.g. the server's
+    // self-signed one, or the JDK's default trust store when trustStore is null.
+    // Reconnects through the same context to the same host and port resume the previous session.
+    public static SSLContext clientContext(Path trustStore , char[] password) throws IOException , GeneralSecurityException {
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(trustStore == null ? null : KeyStore.getInstance(trustStore.toFile() , password));
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null , trustManagers.getTrustManagers() , null);
+        return context;
+    }
+
+    // Static method to connect a client socket and check the server's certificate against the host name
+    public static SSLSocket connect(SSLContext context , String host , int port) throws IOException {
+        SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket(host , port);
+        SSLParameters parameters = socket.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        socket.setSSLParameters(parameters);
+        return socket;
+    }
+
+    // Static method to layer a server-side TLS socket over an accepted socket, or return it as is when TLS is off.
+    // Nothing is exchanged yet: the handshake happens on the first read, on the session's thread.
+    static Socket wrap(Socket socket) throws IOException {
+        SSLContext context = serverContext;
+        if (context == null) return socket;
+        return context.getSocketFactory().createSocket(socket , null , true);
+    }
+
+    // Static method to create the engine of an accepted non-blocking connection, or null when TLS is off
+    static SSLEngine newEngine() {
+        SSLContext context = serverContext;
+        if (context == null) return null;
+        SSLEngine engine = context.createSSLEngine();
+        engine.setUseClientMode(false);
+        return engine;
+    }
+
+    // Static method to run the delegated tasks of a handshake on the handshake threads, then call onDone there
+    static void runDelegatedTasks(SSLEngine engine , Runnable onDone) {
+        Runnable tasks = () -> {
+            Runnable task;
+            while ((task = engine.getDelegatedTask()) != null) {
+                task.run();
+            }
+            onDone.run();
+        };
+        ExecutorService executor = handshakeExecutor;
+        if (executor == null || executor.isShutdown()) {
+            // TLS was turned off since the connection was accepted, finish its handshake on the caller's thread
+            tasks.run();
+        } else {
+            executor.execute(tasks);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package game;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+// TLS over a non-blocking channel, used by NioConnection in place of the channel's own read and write:
+// read decrypts what was received into the caller's buffer and write encrypts the caller's bytes and sends them.
+// Both drive the handshake as a side effect. Its delegated tasks run on the handshake threads while reads and
+// writes return nothing, and onTaskDone is called there once they are done, for the owner to call taskDone on
+// its loop and read and flush again. Only touched on the loop thread.
+final class TlsChannel {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SocketChannel channel; // The encrypted channel
+    private final SSLEngine engine; // TLS state of the connection
+    private final Runnable onTaskDone; // Called on a handshake thread once the delegated tasks have run
+    private final int packetSize; // Largest TLS record
+    private ByteBuffer received; // Records read and not decrypted yet (write mode), kept across reads
+    private ByteBuffer unsent; // Records encrypted and not sent yet (write mode), kept across writes
+    private boolean taskRunning; // Whether the handshake waits for its delegated tasks
+
+    TlsChannel(SocketChannel channel , SSLEngine engine , Runnable onTaskDone) {
+        this.channel = channel;
+        this.engine = engine;
+        this.onTaskDone = onTaskDone;
+        this.packetSize = engine.getSession().getPacketBufferSize();
+        this.received = ByteBuffer.allocate(packetSize);
+        this.unsent = ByteBuffer.allocate(packetSize);
+    }
+
+    // Method to decrypt received records into the buffer, reading from the channel when a record is incomplete.
+    // Returns the bytes decrypted, 0 if none can be now (nothing received, or the handshake is not done)
+    // and -1 once the client closed the connection.
+    int read(ByteBuffer buffer) throws IOException {
+        int decrypted = 0;
+        while (handshake(engine.getHandshakeStatus())) {
+            received.flip();
+            SSLEngineResult result;
+            try {
+                result = engine.unwrap(received , buffer);
+            } finally {
+                received.compact();
+            }
+            decrypted += result.bytesProduced();
+            switch (result.getStatus()) {
+                case BUFFER_UNDERFLOW:
+                    // Hand over what was decrypted before waiting for the rest of the record
+                    if (decrypted > 0) return decrypted;
+                    if (!received.hasRemaining()) received = grow(received);
+                    int read = channel.read(received);
+                    if (read < 0) return -1;
+                    if (read == 0) return 0;
+                    Metrics.bytesRead(read);
+                    break;
+                case BUFFER_OVERFLOW:
+                    // The buffer is full, the caller frames it and reads again
+                    return decrypted;
+                case CLOSED:
+                    // close_notify from the client
+                    return decrypted > 0 ? decrypted : -1;
+                default:
+                    break;
+            }
+        }
+        return decrypted;
+    }
+
+    // Method to encrypt and send as much of the buffer as the socket accepts without blocking.
+    // Bytes are left in the buffer while the handshake is not done, or once the socket is full (see hasUnsent).
+    void write(ByteBuffer buffer) throws IOException {
+        if (!send()) return;
+        while (buffer.hasRemaining() && handshake(engine.getHandshakeStatus())) {
+            SSLEngineResult result = wrap(buffer);
+            if (result.getStatus() == SSLEngineResult.Status.CLOSED) throw new SSLException("TLS connection closed");
+            if (!send()) return;
+            // Nothing goes out before the handshake is done
+            if (result.bytesConsumed() == 0) return;
+        }
+        // Records the handshake produced, e.g. session tickets
+        send();
+    }
+
+    // Check if encrypted records wait for the socket to accept them
+    boolean hasUnsent() {
+        return unsent.position() > 0;
+    }
+
+    // Method called on the loop thread once the delegated tasks have run, before reading and writing again
+    void taskDone() {
+        taskRunning = false;
+    }
+
+    // Method to send close_notify, as far as the socket takes it without blocking
+    void close() {
+        engine.closeOutbound();
+        try {
+            wrap(EMPTY);
+            send();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Method to run the handshake as far as it goes without input from the client.
+    // Returns false while the delegated tasks run, the handshake carries on once they are done.
+    private boolean handshake(SSLEngineResult.HandshakeStatus status) throws IOException {
+        while (!taskRunning) {
+            switch (status) {
+                case NEED_WRAP:
+                    status = wrap(EMPTY).getHandshakeStatus();
+                    break;
+                case NEED_TASK:
+                    // Key exchange and signatures take milliseconds of CPU, which the loop's other connections
+                    // should not wait for
+                    taskRunning = true;
+                    Tls.runDelegatedTasks(engine , onTaskDone);
+                    return false;
+                default:
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    // Method to encrypt bytes into the unsent records, making room for a whole record if needed
+    private SSLEngineResult wrap(ByteBuffer buffer) throws SSLException {
+        while (true) {
+            SSLEngineResult result = engine.wrap(buffer , unsent);
+            if (result.getStatus() != SSLEngineResult.Status.BUFFER_OVERFLOW) return result;
+            unsent = grow(unsent);
+        }
+    }
+
+    // Method to write the unsent records to the channel, returning false if the socket is full
+    private boolean send() throws IOException {
+        if (unsent.position() == 0) return true;
+        unsent.flip();
+        try {
+            Metrics.writeSyscall(channel.write(unsent));
+            return !unsent.hasRemaining();
+        } finally {
+            unsent.compact();
+            // Give back a buffer that grew for a burst
+            if (unsent.position() == 0 && unsent.capacity() > packetSize * 4) unsent = ByteBuffer.allocate(packetSize);
+        }
+    }
+
+    // Method to get a copy of a buffer (in write mode) with room for one more record
+    private ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() + packetSize);
+        buffer.flip();
+        return grown.put(buffer);
+    }
+}
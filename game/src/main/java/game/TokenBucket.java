@@ -0,0 +1,26 @@
+package game;
+
+import java.util.concurrent.TimeUnit;
+
+// Token bucket limiting the messages of one session, kept in its GCRA form:
+// instead of a token count and a refill time it stores the time the bucket would be full again,
+// so taking a token is one comparison and one addition. Only used by the session's own I/O thread.
+public final class TokenBucket {
+
+    private final long interval; // Nanoseconds it takes to earn one token
+    private final long tolerance; // How far the bucket may run ahead of its rate: the burst beyond the first token
+    private long fullAt = Long.MIN_VALUE; // System.nanoTime() at which every token would be back
+
+    public TokenBucket(int perSecond , int burst) {
+        this.interval = TimeUnit.SECONDS.toNanos(1) / perSecond;
+        this.tolerance = interval * (Math.max(1 , burst) - 1);
+    }
+
+    // Method to take one token at the given time, returning false when the bucket is empty
+    public boolean tryTake(long now) {
+        long base = Math.max(fullAt , now);
+        if (base - now > tolerance) return false;
+        fullAt = base + interval;
+        return true;
+    }
+}
@@ -0,0 +1,119 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Checks ranks and the top-K against a sorted list of every player's score, through a seeded random sequence of
+// adds, updates and removes across the bucketed scores and the sorted map above maxScore
+class LeaderboardTest {
+
+    private static final int MAX_SCORE = 1 << 10; // Small, so the random scores cross it often
+    private static final int PLAYERS = 300;
+
+    @Test
+    void ranksAndTopMatchASortedList() {
+        Random random = new Random(42);
+        Leaderboard leaderboard = new Leaderboard(MAX_SCORE);
+        Map<Long, Integer> scores = new HashMap<>();
+        for (int step = 0; step < 20_000; step++) {
+            long clientId = random.nextInt(PLAYERS);
+            int score = randomScore(random);
+            int operation = random.nextInt(10);
+            if (operation == 0) {
+                leaderboard.remove(clientId);
+                scores.remove(clientId);
+            } else if (operation < 4 || !scores.containsKey(clientId)) {
+                leaderboard.add(clientId , "Player " + clientId , score);
+                scores.put(clientId , score);
+            } else {
+                leaderboard.update(clientId , score);
+                scores.put(clientId , score);
+            }
+            if (step % 50 == 0) check(leaderboard , scores , 1 + random.nextInt(40));
+        }
+        check(leaderboard , scores , PLAYERS);
+    }
+
+    @Test
+    void updatesCrossingMaxScoreMoveThePlayer() {
+        Leaderboard leaderboard = new Leaderboard(MAX_SCORE);
+        leaderboard.add(1 , "Low" , 10);
+        leaderboard.add(2 , "Mover" , MAX_SCORE - 1);
+        leaderboard.add(3 , "High" , MAX_SCORE + 5);
+        assertEquals(2 , leaderboard.rank(2));
+
+        // Into the sorted map, above the player already there
+        leaderboard.update(2 , MAX_SCORE + 6);
+        assertEquals(1 , leaderboard.rank(2));
+        assertEquals(2 , leaderboard.rank(3));
+        assertEquals(3 , leaderboard.rank(1));
+
+        // Within the sorted map, to a tie
+        leaderboard.update(2 , MAX_SCORE + 5);
+        assertEquals(1 , leaderboard.rank(2));
+        assertEquals(1 , leaderboard.rank(3));
+
+        // Back into the buckets, below everyone
+        leaderboard.update(2 , 3);
+        assertEquals(3 , leaderboard.rank(2));
+        assertEquals(2 , leaderboard.rank(1));
+        List<Leaderboard.Ranked> top = leaderboard.top(3);
+        assertEquals(List.of("High" , "Low" , "Mover") , List.of(top.get(0).name , top.get(1).name , top.get(2).name));
+    }
+
+    @Test
+    void topSkipsEmptyBucketsAndSharesRanksOnTies() {
+        Leaderboard leaderboard = new Leaderboard(1 << 16);
+        leaderboard.add(1 , "A" , 60_000);
+        leaderboard.add(2 , "B" , 7);
+        leaderboard.add(3 , "C" , 7);
+        leaderboard.add(4 , "D" , 0);
+        List<Leaderboard.Ranked> top = leaderboard.top(10);
+        assertEquals(4 , top.size());
+        assertEquals(List.of(1 , 2 , 2 , 4) , List.of(top.get(0).rank , top.get(1).rank , top.get(2).rank , top.get(3).rank));
+        assertEquals(List.of(60_000 , 7 , 7 , 0) , List.of(top.get(0).score , top.get(1).score , top.get(2).score , top.get(3).score));
+    }
+
+    // Scores mostly low and dense, some anywhere below maxScore and some above it
+    private static int randomScore(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return MAX_SCORE + random.nextInt(5_000);
+            case 1:
+                return random.nextInt(MAX_SCORE);
+            default:
+                return random.nextInt(20);
+        }
+    }
+
+    private static void check(Leaderboard leaderboard , Map<Long, Integer> scores , int k) {
+        List<Integer> sorted = new ArrayList<>(scores.values());
+        sorted.sort((a , b) -> Integer.compare(b , a));
+        assertEquals(scores.size() , leaderboard.size());
+        for (Map.Entry<Long, Integer> player : scores.entrySet()) {
+            assertEquals(1 + above(sorted , player.getValue()) , leaderboard.rank(player.getKey()) ,
+                    "rank of client " + player.getKey() + " with " + player.getValue() + " points");
+        }
+        List<Leaderboard.Ranked> top = leaderboard.top(k);
+        assertEquals(Math.min(k , sorted.size()) , top.size());
+        for (int i = 0; i < top.size(); i++) {
+            int score = sorted.get(i);
+            assertEquals(score , top.get(i).score , "score at position " + i);
+            assertEquals(1 + above(sorted , score) , top.get(i).rank , "rank at position " + i);
+        }
+    }
+
+    // Number of players with a better score, in a list sorted best first
+    private static int above(List<Integer> sorted , int score) {
+        int count = 0;
+        while (count < sorted.size() && sorted.get(count) > score) count++;
+        return count;
+    }
+}
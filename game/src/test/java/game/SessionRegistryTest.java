@@ -0,0 +1,109 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Opens and closes 100k sessions from many threads at once and checks that no ID is lost or handed out twice
+class SessionRegistryTest {
+
+    private static final int SESSIONS = 100_000;
+    private static final int THREADS = 16;
+
+    @Test
+    void concurrentOpenAndCloseNeverLosesOrDuplicatesIds() throws Exception {
+        SessionRegistry registry = new SessionRegistry();
+        ConcurrentLinkedQueue<Long> ids = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int worker = t;
+            workers.add(threads.submit(() -> {
+                start.await();
+                List<ClientManager> open = new ArrayList<>();
+                List<Long> openIds = new ArrayList<>();
+                for (int i = worker; i < SESSIONS; i += THREADS) {
+                    ClientManager session = newSession();
+                    long id = registry.register(session);
+                    ids.add(id);
+                    assertSame(session , registry.get(id) , "session not found under its own ID");
+                    open.add(session);
+                    openIds.add(id);
+                    // Close sessions in bursts, so opens and closes of all threads interleave
+                    if (open.size() == 8) {
+                        closeAll(registry , open , openIds);
+                    }
+                }
+                closeAll(registry , open , openIds);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(60 , TimeUnit.SECONDS);
+        }
+        threads.shutdown();
+
+        // Every session got an ID, and the IDs are exactly 1..SESSIONS
+        assertEquals(SESSIONS , ids.size());
+        BitSet seen = new BitSet(SESSIONS + 1);
+        for (long id : ids) {
+            assertTrue(id >= 1 && id <= SESSIONS , "ID out of range: " + id);
+            assertFalse(seen.get((int) id) , "ID handed out twice: " + id);
+            seen.set((int) id);
+        }
+        assertEquals(SESSIONS , seen.cardinality());
+        assertEquals(0 , registry.size() , "closed sessions left in the registry");
+    }
+
+    @Test
+    void removeOnlyTakesTheSessionStillStored() {
+        SessionRegistry registry = new SessionRegistry();
+        ClientManager first = newSession();
+        ClientManager resumed = newSession();
+        long id = registry.register(first);
+        // A resumed session replaces the old one under the same ID, and the old one's close leaves it alone
+        registry.attach(id , resumed);
+        assertFalse(registry.remove(id , first));
+        assertSame(resumed , registry.get(id));
+        assertTrue(registry.remove(id , resumed));
+        assertEquals(0 , registry.size());
+    }
+
+    @Test
+    void reservedIdsAreNeverHandedOut() {
+        SessionRegistry registry = new SessionRegistry();
+        registry.reserveUpTo(500);
+        assertEquals(501 , registry.register(newSession()));
+        // Reserving below the last ID changes nothing
+        registry.reserveUpTo(10);
+        assertEquals(502 , registry.register(newSession()));
+    }
+
+    private static void closeAll(SessionRegistry registry , List<ClientManager> open , List<Long> openIds) {
+        for (int i = 0; i < open.size(); i++) {
+            assertTrue(registry.remove(openIds.get(i) , open.get(i)) , "session already gone: " + openIds.get(i));
+        }
+        open.clear();
+        openIds.clear();
+    }
+
+    // A session object that is never started, only stored in the registry
+    private static ClientManager newSession() {
+        return ClientManager.proxy(new ProxyConnection(null , 0 , false) , 0 , null);
+    }
+}